@@ -0,0 +1,152 @@
+package juno.concurrent;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ejecutor que ajusta su número de hilos entre un mínimo y un máximo según
+ * el tiempo que esperan las tareas en la cola y la ocupación de los hilos.
+ *
+ * <p>Crece en cuanto la espera media supera {@link #setGrowWait}; sólo se
+ * reduce cuando la espera queda por debajo de {@link #setShrinkWait} y los
+ * hilos están ociosos durante varios intervalos seguidos. Esa diferencia
+ * entre umbrales (histéresis) evita que el tamaño oscile. La evaluación se
+ * hace al enviar y al terminar tareas, sin un hilo de control aparte.</p>
+ */
+public class AdaptiveExecutor extends ThreadPoolExecutor {
+
+  /** Intervalos seguidos de poca carga necesarios para quitar un hilo. */
+  private static final int SHRINK_INTERVALS = 3;
+
+  /** Ocupación por debajo de la cual se considera que sobran hilos. */
+  private static final double SHRINK_UTILIZATION = 0.5;
+
+  private final int minThreads;
+  private final int maxThreads;
+
+  private volatile long intervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+  private volatile long growWaitNanos = TimeUnit.MILLISECONDS.toNanos(10);
+  private volatile long shrinkWaitNanos = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** Métricas acumuladas durante el intervalo en curso. */
+  private final AtomicLong waitNanos = new AtomicLong();
+  private final AtomicLong busyNanos = new AtomicLong();
+  private final AtomicInteger started = new AtomicInteger();
+
+  private final AtomicLong lastAdjust = new AtomicLong(System.nanoTime());
+  private int quietIntervals;
+
+  public AdaptiveExecutor(int minThreads, int maxThreads, ThreadFactory factory) {
+    super(minThreads, maxThreads, 60L, TimeUnit.SECONDS,
+        new HandoffQueue<Runnable>(), factory);
+    if (minThreads < 1 || maxThreads < minThreads) {
+      throw new IllegalArgumentException("minThreads=" + minThreads
+              + ", maxThreads=" + maxThreads);
+    }
+    this.minThreads = minThreads;
+    this.maxThreads = maxThreads;
+  }
+
+  public int getMinThreads() {
+    return minThreads;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /** Cada cuánto se evalúa el tamaño del grupo. */
+  public void setInterval(long time, TimeUnit unit) {
+    intervalNanos = unit.toNanos(time);
+  }
+
+  /** Espera media en cola a partir de la cual se agrega un hilo. */
+  public void setGrowWait(long time, TimeUnit unit) {
+    growWaitNanos = unit.toNanos(time);
+  }
+
+  /** Espera media en cola por debajo de la cual se puede quitar un hilo. */
+  public void setShrinkWait(long time, TimeUnit unit) {
+    shrinkWaitNanos = unit.toNanos(time);
+  }
+
+  @Override public void execute(Runnable command) {
+    if (command == null) throw new NullPointerException();
+    super.execute(new Timed(command));
+    adjust(System.nanoTime());
+  }
+
+  @Override protected void beforeExecute(Thread t, Runnable r) {
+    if (r instanceof Timed) {
+      Timed timed = (Timed) r;
+      timed.started = System.nanoTime();
+      waitNanos.addAndGet(timed.started - timed.enqueued);
+      started.incrementAndGet();
+    }
+    super.beforeExecute(t, r);
+  }
+
+  @Override protected void afterExecute(Runnable r, Throwable t) {
+    super.afterExecute(r, t);
+    long now = System.nanoTime();
+    if (r instanceof Timed) {
+      busyNanos.addAndGet(now - ((Timed) r).started);
+    }
+    adjust(now);
+  }
+
+  /**
+   * Evalúa las métricas del último intervalo y agrega o quita un hilo. Sólo
+   * un hilo hace la evaluación por intervalo.
+   */
+  private void adjust(long now) {
+    long last = lastAdjust.get();
+    long elapsed = now - last;
+    if (elapsed < intervalNanos || !lastAdjust.compareAndSet(last, now)) {
+      return;
+    }
+    int count = started.getAndSet(0);
+    long wait = waitNanos.getAndSet(0);
+    long busy = busyNanos.getAndSet(0);
+
+    int threads = getCorePoolSize();
+    boolean backlog = !getQueue().isEmpty();
+    long avgWait = count > 0 ? wait / count : 0;
+    double utilization = (double) busy / ((double) elapsed * threads);
+
+    synchronized (this) {
+      if (avgWait > growWaitNanos || (count == 0 && backlog)) {
+        quietIntervals = 0;
+        if (threads < maxThreads) {
+          setCorePoolSize(threads + 1);
+        }
+      } else if (avgWait < shrinkWaitNanos && !backlog
+              && utilization < SHRINK_UTILIZATION) {
+        if (++quietIntervals >= SHRINK_INTERVALS && threads > minThreads) {
+          quietIntervals = 0;
+          setCorePoolSize(threads - 1);
+        }
+      } else {
+        quietIntervals = 0;
+      }
+    }
+  }
+
+  /** Tarea con las marcas de tiempo de encolado e inicio. */
+  static final class Timed implements Runnable {
+    final Runnable command;
+    final long enqueued = System.nanoTime();
+    long started;
+
+    Timed(Runnable command) {
+      this.command = command;
+    }
+
+    @Override public void run() {
+      command.run();
+    }
+  }
+}
@@ -1,6 +1,11 @@
 package juno.concurrent;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AsyncCall<T> 
   implements Call<T>, Callback<T>, Task<T>, Runnable {
@@ -8,8 +13,25 @@ public abstract class AsyncCall<T>
   final Dispatcher dispatcher;
   Callback<T> callback;
   Future future;
+  /** Contexto capturado al ejecutar la llamada. */
+  Object[] context;
   boolean cancel;
   boolean running = false;
+  /** {@code true} cuando un hilo del despachador empezó a ejecutarla. */
+  volatile boolean started;
+  
+  /** Último progreso publicado, pendiente de entregar. */
+  private volatile long progressCurrent, progressTotal;
+  private volatile long progressInterval = TimeUnit.MILLISECONDS.toNanos(50);
+  private final AtomicBoolean progressPending = new AtomicBoolean();
+  private long lastProgress;
+  private boolean progressSkipped;
+  private final Runnable progressDelivery = new Runnable() {
+    @Override public void run() {
+      progressPending.set(false);
+      onProgress(progressCurrent, progressTotal);
+    }
+  };
 
   public AsyncCall() {
     this(Dispatcher.get());
@@ -42,6 +64,7 @@ public abstract class AsyncCall<T>
 
   @Override public boolean cancel(boolean mayInterruptIfRunning) {
     running = false;
+    dispatcher.cancelled(this);
     if (future != null) { 
       return future.cancel(mayInterruptIfRunning);
     } else { 
@@ -57,14 +80,94 @@ public abstract class AsyncCall<T>
   @Override public void onFailure(Exception e) {
     if (callback != null) callback.onFailure(e);
   }
+  
+  /**
+   * Recibe el progreso en el hilo de entrega. Por defecto lo pasa al
+   * callback si es un {@link ProgressCallback}.
+   */
+  public void onProgress(long current, long total) {
+    if (callback instanceof ProgressCallback) {
+      ((ProgressCallback<T>) callback).onProgress(current, total);
+    }
+  }
+  
+  /** Intervalo mínimo entre dos entregas de progreso, 50 ms por defecto. */
+  public void setProgressInterval(long time, TimeUnit unit) {
+    progressInterval = unit.toNanos(time);
+  }
+  
+  /**
+   * Publica el progreso desde {@link #doInBackground()}. Sólo se guarda el 
+   * último valor y se entrega a {@link #onProgress(long, long)} como mucho 
+   * una vez por intervalo, así que se puede llamar por cada bloque copiado.
+   * El último valor siempre se entrega antes que la respuesta.
+   *
+   * @param current cantidad procesada
+   * @param total cantidad total, o {@code -1} si se desconoce
+   */
+  protected void publishProgress(long current, long total) {
+    progressTotal = total;
+    progressCurrent = current;
+    long now = System.nanoTime();
+    if (now - lastProgress < progressInterval) {
+      progressSkipped = true;
+      return;
+    }
+    lastProgress = now;
+    deliverProgress();
+  }
+  
+  private void deliverProgress() {
+    progressSkipped = false;
+    if (progressPending.compareAndSet(false, true)) {
+      dispatcher.delivery(progressDelivery);
+    }
+  }
+  
+  private void flushProgress() {
+    if (progressSkipped) deliverProgress();
+  }
+  
+  /**
+   * Envuelve el flujo para que publique el progreso por cada escritura.
+   * 
+   * <pre>
+   * IOUtils.copy(in, progressOutput(out, file.length()));
+   * </pre>
+   *
+   * @param out flujo de salida
+   * @param total cantidad total de bytes, o {@code -1} si se desconoce
+   */
+  protected OutputStream progressOutput(OutputStream out, final long total) {
+    return new FilterOutputStream(out) {
+      long written;
+      @Override public void write(int b) throws IOException {
+        out.write(b);
+        publishProgress(++written, total);
+      }
+      @Override public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        written += len;
+        publishProgress(written, total);
+      }
+    };
+  }
 
    
   @Override public void run() {
+    started = true;
+    lastProgress = System.nanoTime() - progressInterval;
+    Object[] previous = CallContext.attach(context);
     try {
       T result = doInBackground();
+      flushProgress();
       dispatcher.onResponse(this, result);
     } catch (Exception e) {
+      flushProgress();
       dispatcher.onFailure(this, e);
+    } finally {
+      CallContext.restore(previous);
+      dispatcher.finished(this);
     }
     running = false;
   }
@@ -0,0 +1,131 @@
+package juno.concurrent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Datos del contexto de una petición (id de traza, cliente, plazo...) que
+ * viajan con las llamadas de un hilo a otro.
+ *
+ * <p>El {@link Dispatcher} captura el contexto del hilo que ejecuta la
+ * llamada y lo restaura alrededor de {@link AsyncCall#doInBackground()} y
+ * de la entrega de la respuesta. El contexto es un arreglo inmutable de
+ * tamaño fijo indexado por {@link Key}: capturarlo es copiar una referencia
+ * y sólo {@link #set} crea un arreglo nuevo.</p>
+ *
+ * <pre>
+ * static final CallContext.Key&lt;String&gt; TRACE = CallContext.key("trace");
+ * CallContext.set(TRACE, "a1b2");
+ * call.execute(callback); // TRACE.get() == "a1b2" en el hilo de trabajo
+ * </pre>
+ */
+public final class CallContext {
+
+  /** Número máximo de claves que se pueden crear. */
+  public static final int MAX_KEYS = 16;
+
+  private static final AtomicInteger NEXT_INDEX = new AtomicInteger();
+
+  /** Contexto del hilo actual, {@code null} si esta vacío. */
+  private static final ThreadLocal<Object[]> CURRENT = new ThreadLocal<Object[]>();
+
+  private CallContext() {
+  }
+
+  /**
+   * Crea una clave nueva, normalmente guardada en una constante.
+   * @param name nombre descriptivo de la clave
+   * @throws IllegalStateException si ya se crearon {@link #MAX_KEYS} claves
+   */
+  public static <T> Key<T> key(String name) {
+    int index = NEXT_INDEX.getAndIncrement();
+    if (index >= MAX_KEYS) {
+      throw new IllegalStateException("Too many context keys: " + name);
+    }
+    return new Key<T>(name, index);
+  }
+
+  /** Asigna el valor de la clave en el contexto del hilo actual. */
+  public static <T> void set(Key<T> key, T value) {
+    Object[] current = CURRENT.get();
+    Object[] values = new Object[MAX_KEYS];
+    if (current != null) {
+      System.arraycopy(current, 0, values, 0, MAX_KEYS);
+    }
+    values[key.index] = value;
+    CURRENT.set(values);
+  }
+
+  /** Obtiene el valor de la clave en el contexto del hilo actual. */
+  @SuppressWarnings("unchecked")
+  public static <T> T get(Key<T> key) {
+    Object[] current = CURRENT.get();
+    return current != null ? (T) current[key.index] : null;
+  }
+
+  /** Vacía el contexto del hilo actual. */
+  public static void clear() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Envuelve la tarea para que se ejecute con el contexto del hilo actual.
+   * Util para pasar el contexto a ejecutores propios.
+   */
+  public static Runnable wrap(final Runnable runnable) {
+    final Object[] context = CURRENT.get();
+    if (context == null) return runnable;
+    return new Runnable() {
+      @Override public void run() {
+        Object[] previous = attach(context);
+        try {
+          runnable.run();
+        } finally {
+          restore(previous);
+        }
+      }
+    };
+  }
+
+  /** Captura el contexto del hilo actual. */
+  static Object[] capture() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Instala el contexto en el hilo actual.
+   * @return el contexto anterior, para {@link #restore(Object[])}
+   */
+  static Object[] attach(Object[] context) {
+    Object[] previous = CURRENT.get();
+    if (previous != context) CURRENT.set(context);
+    return previous;
+  }
+
+  /** Vuelve a instalar el contexto devuelto por {@link #attach(Object[])}. */
+  static void restore(Object[] previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  public static final class Key<T> {
+    final String name;
+    final int index;
+
+    Key(String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+
+    /** Obtiene el valor de esta clave en el contexto del hilo actual. */
+    public T get() {
+      return CallContext.get(this);
+    }
+
+    @Override public String toString() {
+      return name;
+    }
+  }
+}
@@ -1,23 +1,34 @@
 package juno.concurrent;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import juno.Platform;
 import juno.util.Util;
 
 public final class Dispatcher implements ThreadFactory {
-  private static Dispatcher instance;
-
   /** Livera las respuestas al hilo de la UI. */
-  private Executor executorDelivery;
+  private volatile Executor executorDelivery;
   
   /** Ejecuta las llamadas "Call". */
-  private ExecutorService executorService;
+  private volatile ExecutorService executorService;
+  
+  /** Llamadas en cola o en ejecución. */
+  private final Set<AsyncCall<?>> calls = 
+      Collections.newSetFromMap(new ConcurrentHashMap<AsyncCall<?>, Boolean>());
+  
+  /** Llamadas terminadas desde que se pidió el apagado. */
+  private final AtomicInteger completed = new AtomicInteger();
+  
+  private volatile boolean shutdown;
   
   public Dispatcher(ExecutorService executorService) {
     this.executorService = executorService;
@@ -26,11 +37,24 @@ public final class Dispatcher implements ThreadFactory {
   public Dispatcher() {
   }
   
-  public synchronized static Dispatcher get() {
-    if (instance == null) {
-      instance = new Dispatcher();
-    }
-    return instance;
+  /**
+   * Crea un despachador cuyo grupo de hilos crece y se reduce entre
+   * {@code minThreads} y {@code maxThreads} según la carga.
+   * @see AdaptiveExecutor
+   */
+  public static Dispatcher adaptive(int minThreads, int maxThreads) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.executorService = new AdaptiveExecutor(minThreads, maxThreads, dispatcher);
+    return dispatcher;
+  }
+  
+  public static Dispatcher get() {
+    return Holder.INSTANCE;
+  }
+  
+  /** Crea la instancia compartida la primera vez que se usa, sin bloqueos. */
+  private static final class Holder {
+    static final Dispatcher INSTANCE = new Dispatcher();
   }
   
   @Override public Thread newThread(Runnable runnable) {
@@ -39,13 +63,21 @@ public final class Dispatcher implements ThreadFactory {
     return result;
   }
   
-  public synchronized ExecutorService executorService() {
-    if (executorService == null) {
-      int nThreads = 1; //4
-      executorService = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
-          new LinkedBlockingQueue<Runnable>(), this);
+  public ExecutorService executorService() {
+    ExecutorService es = executorService;
+    if (es == null) {
+      synchronized (this) {
+        es = executorService;
+        if (es == null) {
+          if (shutdown) throw new RejectedExecutionException("Dispatcher shutdown");
+          int nThreads = 1; //4
+          es = new ThreadPoolExecutor(nThreads, nThreads, 0L, TimeUnit.MILLISECONDS,
+              new HandoffQueue<Runnable>(), this);
+          executorService = es;
+        }
+      }
     }
-    return executorService;
+    return es;
   }
   public void setExecutorService(ExecutorService es) {
     executorService = es;
@@ -113,13 +145,79 @@ public final class Dispatcher implements ThreadFactory {
     };
   }
   
-  /** Ejecuta la llamada en la cola de peticiones. */
-  public synchronized boolean execute(AsyncCall<?> task) { 
-    if (task.isCancelled() || task.isDone()) return false;
-    // Propone una tarea Runnable para la ejecución y devuelve un Futuro.
-    task.future = executorService().submit(task);
+  /** 
+   * Ejecuta la llamada en la cola de peticiones. No toma ningún bloqueo del 
+   * despachador, así que muchos hilos pueden enviar llamadas a la vez.
+   */
+  public boolean execute(AsyncCall<?> task) { 
+    if (shutdown || task.isCancelled() || task.isDone()) return false;
+    task.context = CallContext.capture();
+    calls.add(task);
+    try {
+      // Propone una tarea Runnable para la ejecución y devuelve un Futuro.
+      task.future = executorService().submit(task);
+    } catch (RejectedExecutionException e) {
+      calls.remove(task);
+      return false;
+    }
     return true;
   }
+  
+  /** Quita la llamada de las llamadas pendientes. */
+  void finished(AsyncCall<?> task) {
+    if (calls.remove(task) && shutdown) {
+      completed.incrementAndGet();
+    }
+  }
+  
+  /**
+   * Quita la llamada que el usuario canceló, sin contarla como terminada
+   * en el {@link ShutdownReport}.
+   */
+  void cancelled(AsyncCall<?> task) {
+    calls.remove(task);
+  }
+  
+  public boolean isShutdown() {
+    return shutdown;
+  }
+  
+  /**
+   * Deja de aceptar llamadas y espera hasta el plazo indicado a que terminen
+   * las llamadas en cola y en ejecución. Las que sigan pendientes al vencer
+   * el plazo se cancelan con {@link AsyncCall#cancel(boolean)}.
+   *
+   * @param timeout tiempo máximo de espera
+   * @param unit unidad de {@code timeout}
+   * @return cuántas llamadas terminaron, se cancelaron o nunca empezaron
+   */
+  public ShutdownReport shutdown(long timeout, TimeUnit unit) {
+    shutdown = true;
+    ExecutorService es;
+    synchronized (this) {
+      es = executorService;
+    }
+    if (es != null) {
+      es.shutdown();
+      try {
+        es.awaitTermination(timeout, unit);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    int cancelled = 0, dropped = 0;
+    for (AsyncCall<?> call : calls) {
+      if (!calls.remove(call)) continue;
+      if (call.started) {
+        cancelled++;
+      } else {
+        dropped++;
+      }
+      call.cancel(true);
+    }
+    if (es != null) es.shutdownNow();
+    return new ShutdownReport(completed.get(), cancelled, dropped);
+  }
     
   public Executor executorDelivery() {
     if (executorDelivery == null) {
@@ -131,8 +229,9 @@ public final class Dispatcher implements ThreadFactory {
     executorDelivery = executor;
   }
   
+  /** Entrega la tarea con el {@link CallContext} del hilo actual. */
   public void delivery(Runnable runnable) {
-    executorDelivery().execute(runnable);
+    executorDelivery().execute(CallContext.wrap(runnable));
   }
   
   /**
@@ -160,5 +259,25 @@ public final class Dispatcher implements ThreadFactory {
       }
     });
   }
+  
+  /** Resultado de {@link Dispatcher#shutdown(long, TimeUnit)}. */
+  public static final class ShutdownReport {
+    /** Llamadas que terminaron durante el apagado. */
+    public final int completed;
+    /** Llamadas en ejecución que se cancelaron al vencer el plazo. */
+    public final int cancelled;
+    /** Llamadas en cola que nunca empezaron. */
+    public final int dropped;
 
+    ShutdownReport(int completed, int cancelled, int dropped) {
+      this.completed = completed;
+      this.cancelled = cancelled;
+      this.dropped = dropped;
+    }
+
+    @Override public String toString() {
+      return "ShutdownReport{completed=" + completed + ", cancelled=" + cancelled
+              + ", dropped=" + dropped + "}";
+    }
+  }
 }
\ No newline at end of file
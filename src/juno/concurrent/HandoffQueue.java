@@ -0,0 +1,125 @@
+package juno.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cola sin límite para los ejecutores del {@link Dispatcher}. Encolar es una
+ * operación sin bloqueos sobre {@link ConcurrentLinkedQueue}; el bloqueo sólo
+ * se toma para despertar a un hilo de trabajo cuando hay alguno esperando,
+ * así que con los hilos ocupados los productores no compiten por un monitor.
+ */
+final class HandoffQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<E>();
+
+  /** Hilos bloqueados en {@link #take()} o {@link #poll(long, TimeUnit)}. */
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+
+  @Override public boolean offer(E e) {
+    queue.offer(e);
+    if (waiters.get() > 0) {
+      lock.lock();
+      try {
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return true;
+  }
+
+  @Override public void put(E e) {
+    offer(e);
+  }
+
+  @Override public boolean offer(E e, long timeout, TimeUnit unit) {
+    return offer(e);
+  }
+
+  @Override public E poll() {
+    return queue.poll();
+  }
+
+  @Override public E take() throws InterruptedException {
+    E e = queue.poll();
+    if (e != null) return e;
+    lock.lockInterruptibly();
+    waiters.incrementAndGet();
+    try {
+      while ((e = queue.poll()) == null) {
+        notEmpty.await();
+      }
+      return e;
+    } finally {
+      waiters.decrementAndGet();
+      lock.unlock();
+    }
+  }
+
+  @Override public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    E e = queue.poll();
+    if (e != null) return e;
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    waiters.incrementAndGet();
+    try {
+      while ((e = queue.poll()) == null) {
+        if (nanos <= 0) return null;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return e;
+    } finally {
+      waiters.decrementAndGet();
+      lock.unlock();
+    }
+  }
+
+  @Override public E peek() {
+    return queue.peek();
+  }
+
+  @Override public boolean remove(Object o) {
+    return queue.remove(o);
+  }
+
+  @Override public int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  @Override public int drainTo(Collection<? super E> c, int maxElements) {
+    if (c == this) throw new IllegalArgumentException();
+    int n = 0;
+    E e;
+    while (n < maxElements && (e = queue.poll()) != null) {
+      c.add(e);
+      n++;
+    }
+    return n;
+  }
+
+  @Override public Iterator<E> iterator() {
+    return queue.iterator();
+  }
+
+  @Override public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  /** Recorre la cola; sólo se usa para diagnóstico. */
+  @Override public int size() {
+    return queue.size();
+  }
+}
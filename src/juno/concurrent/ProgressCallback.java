@@ -0,0 +1,13 @@
+package juno.concurrent;
+
+public interface ProgressCallback<T> extends Callback<T> {
+  /**
+   * Se llama en el hilo de entrega con el último progreso publicado por
+   * {@link AsyncCall#publishProgress(long, long)}. Los valores intermedios
+   * publicados entre dos entregas se descartan.
+   *
+   * @param current cantidad procesada
+   * @param total cantidad total, o {@code -1} si se desconoce
+   */
+  void onProgress(long current, long total);
+}
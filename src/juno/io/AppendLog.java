@@ -0,0 +1,146 @@
+package juno.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro de solo anexado para escribir desde muchos hilos, por ejemplo 
+ * un registro de auditoría.
+ *
+ * <p>Usa confirmación en grupo: cada {@link #append(byte[])} encola su 
+ * registro y espera el bloqueo de escritura. El hilo que lo obtiene escribe
+ * de una vez todos los registros encolados hasta ese momento, con una sola
+ * escritura agrupada al canal y un solo {@code force()} según la 
+ * {@link Durability}. Mientras tanto los demás hilos encolan el siguiente
+ * grupo, así que el costo de sincronizar con el disco se reparte entre 
+ * todos los registros del grupo.</p>
+ */
+public class AppendLog implements Closeable {
+
+  /** Cuándo se considera escrito un registro. */
+  public enum Durability {
+    /** Al escribirlo en el archivo, sin esperar al disco. */
+    NONE,
+    /** Al sincronizar los datos con el disco, {@code force(false)}. */
+    DATA,
+    /** Al sincronizar los datos y los metadatos, {@code force(true)}. */
+    FULL
+  }
+
+  /** Máximo de registros por grupo. */
+  private static final int MAX_BATCH = 1024;
+
+  private final FileOutputStream out;
+  private final FileChannel channel;
+  private final Durability durability;
+  private final Charset charset;
+  private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<Entry>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private volatile boolean closed;
+
+  public AppendLog(File file, Durability durability) throws IOException {
+    this(file, durability, Charset.forName("UTF-8"));
+  }
+
+  /**
+   * @param file el archivo; se crea si no existe y se escribe al final
+   * @param durability cuándo regresa {@link #append(byte[])}
+   * @param charset juego de caracteres de {@link #append(CharSequence)}
+   */
+  public AppendLog(File file, Durability durability, Charset charset) throws IOException {
+    this.out = new FileOutputStream(file, true);
+    this.channel = out.getChannel();
+    this.durability = durability;
+    this.charset = charset;
+  }
+
+  /** Anexa el texto codificado con el juego de caracteres del registro. */
+  public void append(CharSequence cs) throws IOException {
+    append(cs.toString().getBytes(charset.name()));
+  }
+
+  /**
+   * Anexa un registro y espera hasta que cumpla la {@link Durability}.
+   * @throws IOException si falló la escritura del grupo del registro
+   */
+  public void append(byte[] record) throws IOException {
+    if (closed) throw new IOException("AppendLog closed");
+    Entry entry = new Entry(ByteBuffer.wrap(record));
+    queue.offer(entry);
+    writeLock.lock();
+    try {
+      // Otro hilo pudo escribir este registro mientras esperábamos.
+      if (!entry.done) commit();
+    } finally {
+      writeLock.unlock();
+    }
+    if (entry.error != null) {
+      throw (IOException) new IOException("Append failed").initCause(entry.error);
+    }
+  }
+
+  /** Escribe los registros encolados. Se llama con el bloqueo tomado. */
+  private void commit() {
+    while (!queue.isEmpty()) {
+      List<Entry> batch = new ArrayList<Entry>();
+      Entry entry;
+      while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null) {
+        batch.add(entry);
+      }
+      ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+      long remaining = 0;
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = batch.get(i).data;
+        remaining += buffers[i].remaining();
+      }
+      IOException error = null;
+      try {
+        while (remaining > 0) {
+          remaining -= channel.write(buffers);
+        }
+        if (durability != Durability.NONE) {
+          channel.force(durability == Durability.FULL);
+        }
+      } catch (IOException e) {
+        error = e;
+      }
+      for (Entry e : batch) {
+        e.error = error;
+        e.done = true;
+      }
+    }
+  }
+
+  /** Escribe los registros pendientes, sincroniza y cierra el archivo. */
+  @Override public void close() throws IOException {
+    writeLock.lock();
+    try {
+      if (closed) return;
+      closed = true;
+      commit();
+      channel.force(true);
+    } finally {
+      writeLock.unlock();
+      out.close();
+    }
+  }
+
+  private static final class Entry {
+    final ByteBuffer data;
+    volatile boolean done;
+    volatile IOException error;
+
+    Entry(ByteBuffer data) {
+      this.data = data;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package juno.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import juno.concurrent.Call;
+import juno.concurrent.CallContext;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+
+/**
+ * Versiones asíncronas de {@link Files#toByteArray(File)},
+ * {@link Files#write(File, CharSequence, boolean)} y
+ * {@link Files#copy(File, File)}. El resultado se entrega al
+ * {@link Callback} en el ejecutor de entrega del {@link Dispatcher}.
+ *
+ * <p>Cada operación avanza por bloques con lecturas y escrituras
+ * posicionales sobre el canal del archivo, y después de cada bloque vuelve a
+ * la cola. Así un grupo pequeño de hilos de E/S reparte su tiempo entre
+ * miles de operaciones en curso, en lugar de ocupar un hilo por
+ * transferencia.</p>
+ *
+ * <pre>
+ * AsyncFiles.toByteArray(file).execute(new Callback&lt;byte[]&gt;() {
+ *   ...
+ * });
+ * </pre>
+ */
+public final class AsyncFiles {
+  /** Bytes leídos o escritos por paso. */
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /** Bytes transferidos por paso al copiar. */
+  private static final long TRANSFER_SIZE = 1024 * 1024;
+
+  private static volatile Executor executor;
+
+  private AsyncFiles() {
+  }
+
+  /** Ejecutor de E/S, por defecto dos hilos. */
+  public static Executor executor() {
+    Executor result = executor;
+    if (result == null) {
+      synchronized (AsyncFiles.class) {
+        result = executor;
+        if (result == null) {
+          result = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                  Thread thread = new Thread(runnable, "juno AsyncFiles");
+                  thread.setDaemon(true);
+                  return thread;
+                }
+              });
+          executor = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  public static void setExecutor(Executor e) {
+    executor = e;
+  }
+
+  /** Lee el archivo completo. */
+  public static Call<byte[]> toByteArray(final File file) {
+    return new FileOp<byte[]>() {
+      FileInputStream in;
+      byte[] data;
+      int position;
+
+      @Override boolean step() throws IOException {
+        if (in == null) {
+          in = new FileInputStream(file);
+          long size = in.getChannel().size();
+          if (size > Integer.MAX_VALUE) throw new IOException("File too large: " + file);
+          data = new byte[(int) size];
+        }
+        int len = Math.min(CHUNK_SIZE, data.length - position);
+        int count = len > 0 ? in.getChannel().read(ByteBuffer.wrap(data, position, len), position) : -1;
+        if (count == -1) {
+          // El archivo se acortó después de abrirlo.
+          if (position < data.length) data = Arrays.copyOf(data, position);
+          return true;
+        }
+        position += count;
+        return position == data.length;
+      }
+
+      @Override byte[] result() {
+        return data;
+      }
+
+      @Override void close() {
+        IOUtils.closeQuietly(in);
+      }
+    };
+  }
+
+  /** Escribe los bytes en el archivo. */
+  public static Call<Void> write(final File file, final byte[] data, final boolean append) {
+    return new FileOp<Void>() {
+      FileOutputStream out;
+      int position;
+
+      @Override boolean step() throws IOException {
+        if (out == null) out = new FileOutputStream(file, append);
+        int len = Math.min(CHUNK_SIZE, data.length - position);
+        if (len > 0) {
+          position += out.getChannel().write(ByteBuffer.wrap(data, position, len));
+        }
+        return position == data.length;
+      }
+
+      @Override Void result() {
+        return null;
+      }
+
+      @Override void close() {
+        IOUtils.closeQuietly(out);
+      }
+    };
+  }
+
+  /** Escribe el texto en el archivo usando el juego de caracteres por defecto. */
+  public static Call<Void> write(File file, CharSequence cs, boolean append) {
+    return write(file, cs.toString().getBytes(), append);
+  }
+
+  /**
+   * Copia un archivo a otro con {@link FileChannel#transferTo}.
+   * @return en el callback, la cantidad de bytes copiados
+   */
+  public static Call<Long> copy(final File from, final File to) {
+    return new FileOp<Long>() {
+      FileInputStream in;
+      FileOutputStream out;
+      long position, size;
+
+      @Override boolean step() throws IOException {
+        if (in == null) {
+          in = new FileInputStream(from);
+          out = new FileOutputStream(to);
+          size = in.getChannel().size();
+        }
+        if (position < size) {
+          long count = in.getChannel().transferTo(position,
+                  Math.min(TRANSFER_SIZE, size - position), out.getChannel());
+          if (count <= 0) return true;
+          position += count;
+        }
+        return position >= size;
+      }
+
+      @Override Long result() {
+        return position;
+      }
+
+      @Override void close() {
+        IOUtils.closeQuietly(in);
+        IOUtils.closeQuietly(out);
+      }
+    };
+  }
+
+  /**
+   * Operación que avanza un bloque por cada paso en el ejecutor de E/S. 
+   * Termina una sola vez: con la respuesta, con el error o, si se cancela,
+   * con una {@link CancellationException} en {@link Callback#onFailure}.
+   */
+  abstract static class FileOp<T> implements Call<T>, Runnable {
+    static final int RUNNING = 0, DONE = 1, CANCELLED = 2;
+    
+    final Dispatcher dispatcher = Dispatcher.get();
+    Callback<T> callback;
+    final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    /**
+     * Procesa el siguiente bloque.
+     * @return {@code true} al terminar
+     */
+    abstract boolean step() throws IOException;
+
+    abstract T result();
+
+    /** Cierra los archivos abiertos. */
+    abstract void close();
+
+    @Override public void execute(Callback<T> callback) {
+      this.callback = callback;
+      executor().execute(CallContext.wrap(this));
+    }
+
+    @Override public void run() {
+      if (state.get() == CANCELLED) {
+        cancelled();
+        return;
+      }
+      try {
+        if (!step()) {
+          executor().execute(CallContext.wrap(this));
+        } else if (state.compareAndSet(RUNNING, DONE)) {
+          close();
+          if (callback != null) dispatcher.onResponse(callback, result());
+        } else {
+          cancelled();
+        }
+      } catch (Exception e) {
+        if (state.compareAndSet(RUNNING, DONE)) {
+          close();
+          if (callback != null) dispatcher.onFailure(callback, e);
+        } else {
+          cancelled();
+        }
+      }
+    }
+
+    /** Cierra los archivos y avisa al callback de la cancelación. */
+    private void cancelled() {
+      close();
+      if (callback != null) {
+        dispatcher.onFailure(callback, new CancellationException("Call cancelled"));
+      }
+    }
+
+    /**
+     * Cancela la operación; se detiene antes del siguiente bloque y el 
+     * callback recibe una {@link CancellationException}.
+     */
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+      return state.compareAndSet(RUNNING, CANCELLED);
+    }
+
+    @Override public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    @Override public boolean isDone() {
+      return state.get() != RUNNING;
+    }
+  }
+}
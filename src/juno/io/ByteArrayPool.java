@@ -15,11 +15,10 @@
  */
 package juno.io;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * ByteArrayPool is a source and repository of
@@ -48,21 +47,54 @@ import java.util.List;
  * references to it. <p> This class ensures that the total size of the buffers
  * in its recycling pool never exceeds a certain byte limit. When a buffer is
  * returned that would cause the pool to exceed the limit, least-recently-used
- * buffers are disposed.
+ * buffers are disposed. <p> Buffers are kept in power-of-two size classes,
+ * each with its own lock, so getting and returning a buffer is O(1) and
+ * threads working with different sizes do not contend. Buffers allocated by
+ * this pool are rounded up to their size class when they fit in the pool.
+ * <p> The pool counts hits, misses, evictions and rejected returns. When it
+ * is created with a maximum size limit larger than its initial limit, the
+ * limit grows toward the observed working set every time a buffer is
+ * rejected, or evicted less than a decay interval after it was returned, up
+ * to that maximum. After a decay interval without growing, one minute by
+ * default, the limit is halved back toward the initial limit, so a single
+ * burst of large buffers does not pin memory for the life of the pool.
  */
 public class ByteArrayPool {
-  /** El grupo de búferes, organizado tanto por el último uso como por el tamaño del búfer */
-  private List<byte[]> mBuffersByLastUse = new LinkedList<byte[]>();
-  private List<byte[]> mBuffersBySize = new ArrayList<byte[]>(64);
+  /** Una clase de tamaño por cada potencia de dos hasta 2^30. */
+  private static final int CLASSES = 31;
+  
+  /**
+   * El grupo de búferes. La clase {@code i} guarda los búferes cuya longitud
+   * está en {@code [2^i, 2^(i+1))}, ordenados por el último uso.
+   */
+  private final SizeClass[] mClasses = new SizeClass[CLASSES];
   
   /** El tamaño total de los almacenamientos intermedios en el grupo */
-  private int mCurrentSize = 0;
+  private final AtomicInteger mCurrentSize = new AtomicInteger();
   
   /**
    * El tamaño máximo agregado de los almacenamientos intermedios en el conjunto. 
    * Los buffers antiguos se descartan para permanecer debajo de este límite.
    */
-  private final int mSizeLimit;
+  private volatile int mSizeLimit;
+  
+  /** Límite hasta el que puede crecer {@link #mSizeLimit}. */
+  private final int mMaxSizeLimit;
+  
+  /** Límite configurado, al que vuelve {@link #mSizeLimit} sin actividad. */
+  private volatile int mBaseSizeLimit;
+  
+  /** Tiempo sin crecer tras el cual el límite se reduce a la mitad. */
+  private volatile long mDecayNanos = TimeUnit.MINUTES.toNanos(1);
+  
+  /** Última vez que el límite creció o se redujo, en {@link System#nanoTime()}. */
+  private final AtomicLong mLastResize = new AtomicLong(System.nanoTime());
+  
+  /** Contadores de uso. */
+  private final AtomicLong mHits = new AtomicLong();
+  private final AtomicLong mMisses = new AtomicLong();
+  private final AtomicLong mEvictions = new AtomicLong();
+  private final AtomicLong mRejected = new AtomicLong();
   
   /** Compara los almacenamientos intermedios por tamaño */
   protected static final Comparator<byte[]> BUF_COMPARATOR = new Comparator<byte[]>() {
@@ -75,7 +107,109 @@ public class ByteArrayPool {
    * @param sizeLimit the maximum size of the pool, in bytes
    */
   public ByteArrayPool(int sizeLimit) {
+    this(sizeLimit, sizeLimit);
+  }
+
+  /**
+   * Crea un grupo cuyo límite crece según el uso.
+   * 
+   * @param sizeLimit el tamaño inicial máximo del grupo, en bytes
+   * @param maxSizeLimit el tamaño hasta el que puede crecer el límite
+   */
+  public ByteArrayPool(int sizeLimit, int maxSizeLimit) {
+    mSizeLimit = sizeLimit;
+    mBaseSizeLimit = sizeLimit;
+    mMaxSizeLimit = Math.max(sizeLimit, maxSizeLimit);
+    for (int i = 0; i < CLASSES; i++) {
+      mClasses[i] = new SizeClass();
+    }
+  }
+
+  /** El tamaño máximo del grupo, en bytes. */
+  public int getSizeLimit() {
+    return mSizeLimit;
+  }
+  
+  /**
+   * Cambia el tamaño máximo del grupo, descartando búferes si hace falta.
+   * @param sizeLimit el tamaño máximo del grupo, en bytes
+   */
+  public void setSizeLimit(int sizeLimit) {
+    mBaseSizeLimit = sizeLimit;
     mSizeLimit = sizeLimit;
+    trim();
+  }
+  
+  /**
+   * Tiempo sin crecer tras el cual el límite ampliado se reduce a la mitad,
+   * por defecto un minuto.
+   */
+  public void setDecayInterval(long time, TimeUnit unit) {
+    mDecayNanos = unit.toNanos(time);
+  }
+  
+  /** El tamaño total de los búferes guardados, en bytes. */
+  public int getSize() {
+    return mCurrentSize.get();
+  }
+  
+  /** Veces que {@link #getBuf(int)} devolvió un búfer del grupo. */
+  public long getHitCount() {
+    return mHits.get();
+  }
+  
+  /** Veces que {@link #getBuf(int)} tuvo que crear un búfer nuevo. */
+  public long getMissCount() {
+    return mMisses.get();
+  }
+  
+  /** Búferes descartados para no exceder el límite. */
+  public long getEvictionCount() {
+    return mEvictions.get();
+  }
+  
+  /** Búferes devueltos que no se guardaron por ser mayores que el límite. */
+  public long getRejectedCount() {
+    return mRejected.get();
+  }
+  
+  @Override public String toString() {
+    return getClass().getSimpleName() + "{size=" + getSize() + ", limit=" + mSizeLimit
+            + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+            + ", evictions=" + getEvictionCount() + ", rejected=" + getRejectedCount() + "}";
+  }
+  
+  void recordHit() {
+    mHits.incrementAndGet();
+  }
+  
+  /** 
+   * Acerca el límite al conjunto de trabajo observado, sin pasar de 
+   * {@link #mMaxSizeLimit}. 
+   */
+  private void grow(int len) {
+    int limit = mSizeLimit;
+    if (limit >= mMaxSizeLimit) return;
+    long target = Math.max((long) limit + len, (long) len * 2);
+    mSizeLimit = (int) Math.min(target, mMaxSizeLimit);
+    mLastResize.set(System.nanoTime());
+  }
+  
+  /**
+   * Reduce a la mitad el límite ampliado por {@link #grow(int)} si no creció
+   * durante {@link #setDecayInterval}, sin bajar del límite configurado.
+   */
+  void decay() {
+    int limit = mSizeLimit;
+    int base = mBaseSizeLimit;
+    if (limit <= base) return;
+    long now = System.nanoTime();
+    long last = mLastResize.get();
+    if (now - last < mDecayNanos || !mLastResize.compareAndSet(last, now)) {
+      return;
+    }
+    mSizeLimit = Math.max(base, limit / 2);
+    trim();
   }
 
   /**
@@ -85,17 +219,25 @@ public class ByteArrayPool {
    * @param len el tamaño mínimo, en bytes, del buffer requerido. los
    * el buffer devuelto puede ser más grande.
    * @return byte[] el buffer siempre es devuelto
+   * @throws IllegalArgumentException si {@code len} es negativo
    */
-  public synchronized byte[] getBuf(int len) {
-    for (int i = 0; i < mBuffersBySize.size(); i++) {
-      byte[] buf = mBuffersBySize.get(i);
-      if (buf.length >= len) {
-        mCurrentSize -= buf.length;
-        mBuffersBySize.remove(i);
-        mBuffersByLastUse.remove(buf);
+  public byte[] getBuf(int len) {
+    if (len < 0) throw new IllegalArgumentException("len < 0: " + len);
+    int index = ceilClass(len);
+    // Todos los búferes de la clase index y de la siguiente sirven.
+    int last = Math.min(index + 2, CLASSES);
+    for (int i = index; i < last; i++) {
+      byte[] buf = mClasses[i].pollLast();
+      if (buf != null) {
+        mCurrentSize.addAndGet(-buf.length);
+        mHits.incrementAndGet();
         return buf;
       }
     }
+    mMisses.incrementAndGet();
+    if (index < CLASSES && (1 << index) <= mSizeLimit) {
+      return new byte[1 << index];
+    }
     return new byte[len];
   }
 
@@ -105,29 +247,148 @@ public class ByteArrayPool {
    *
    * @param buf el búfer para volver al grupo.
    */
-  public synchronized void returnBuf(byte[] buf) {
-    if (buf == null || buf.length > mSizeLimit) {
+  public void returnBuf(byte[] buf) {
+    if (buf == null || buf.length == 0) {
       return;
     }
-    mBuffersByLastUse.add(buf);
-    int pos = Collections.binarySearch(mBuffersBySize, buf, BUF_COMPARATOR);
-    if (pos < 0) {
-      pos = -pos - 1;
+    decay();
+    if (buf.length > mSizeLimit) {
+      mRejected.incrementAndGet();
+      grow(buf.length);
+      if (buf.length > mSizeLimit) return;
     }
-    mBuffersBySize.add(pos, buf);
-    mCurrentSize += buf.length;
+    mClasses[floorClass(buf.length)].offerLast(buf, System.nanoTime());
+    mCurrentSize.addAndGet(buf.length);
     trim();
   }
 
+  /**
+   * Saca bajo un solo bloqueo hasta {@code out.length} búferes de la primera
+   * clase que sirva para {@code len}, para rellenar una caché por hilo. 
+   * Cuenta un acierto si encontró alguno.
+   * @return cantidad de búferes guardados en {@code out}
+   */
+  int drain(int len, byte[][] out) {
+    int index = ceilClass(len);
+    int last = Math.min(index + 2, CLASSES);
+    for (int i = index; i < last; i++) {
+      int n = mClasses[i].pollLast(out);
+      if (n > 0) {
+        int bytes = 0;
+        for (int j = 0; j < n; j++) {
+          bytes += out[j].length;
+        }
+        mCurrentSize.addAndGet(-bytes);
+        mHits.incrementAndGet();
+        return n;
+      }
+    }
+    return 0;
+  }
+
   /**
    * Elimina los almacenamientos intermedios de la agrupación hasta que 
-   * esté por debajo de su límite de tamaño.
+   * esté por debajo de su límite de tamaño. Descarta primero el búfer 
+   * más antiguo de entre los más antiguos de cada clase. Las marcas de uso
+   * son de {@link System#nanoTime()}.
+   */
+  void trim() {
+    while (getSize() > mSizeLimit) {
+      SizeClass oldest = null;
+      long stamp = Long.MAX_VALUE;
+      for (SizeClass sizeClass : mClasses) {
+        long s = sizeClass.oldest();
+        if (s < stamp) {
+          stamp = s;
+          oldest = sizeClass;
+        }
+      }
+      if (oldest == null) return;
+      byte[] buf = oldest.pollFirst();
+      if (buf != null) {
+        mCurrentSize.addAndGet(-buf.length);
+        mEvictions.incrementAndGet();
+        // Sólo un búfer usado hace poco indica que el límite se queda corto.
+        if (System.nanoTime() - stamp < mDecayNanos) grow(buf.length);
+      }
+    }
+  }
+  
+  /** Clase con los búferes de al menos {@code len} bytes. */
+  static int ceilClass(int len) {
+    return len <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(len - 1);
+  }
+  
+  /** Clase a la que pertenece un búfer de {@code len} bytes. */
+  static int floorClass(int len) {
+    return 31 - Integer.numberOfLeadingZeros(len);
+  }
+  
+  /**
+   * Cola circular de búferes de una clase de tamaño, del más antiguo al más
+   * reciente. Cada clase tiene su propio bloqueo.
    */
-  private synchronized void trim() {
-    while (mCurrentSize > mSizeLimit) {
-      byte[] buf = mBuffersByLastUse.remove(0);
-      mBuffersBySize.remove(buf);
-      mCurrentSize -= buf.length;
+  private static final class SizeClass {
+    private byte[][] bufs = new byte[4][];
+    private long[] stamps = new long[4];
+    private int head;
+    private int size;
+
+    synchronized void offerLast(byte[] buf, long stamp) {
+      if (size == bufs.length) grow();
+      int i = (head + size) & (bufs.length - 1);
+      bufs[i] = buf;
+      stamps[i] = stamp;
+      size++;
+    }
+
+    synchronized byte[] pollLast() {
+      if (size == 0) return null;
+      int i = (head + size - 1) & (bufs.length - 1);
+      byte[] buf = bufs[i];
+      bufs[i] = null;
+      size--;
+      return buf;
+    }
+
+    /** Saca los búferes más recientes, hasta llenar {@code out}. */
+    synchronized int pollLast(byte[][] out) {
+      int n = Math.min(size, out.length);
+      for (int k = 0; k < n; k++) {
+        int i = (head + size - 1) & (bufs.length - 1);
+        out[k] = bufs[i];
+        bufs[i] = null;
+        size--;
+      }
+      return n;
+    }
+
+    synchronized byte[] pollFirst() {
+      if (size == 0) return null;
+      byte[] buf = bufs[head];
+      bufs[head] = null;
+      head = (head + 1) & (bufs.length - 1);
+      size--;
+      return buf;
+    }
+
+    /** Marca de uso del búfer más antiguo, o {@code Long.MAX_VALUE}. */
+    synchronized long oldest() {
+      return size == 0 ? Long.MAX_VALUE : stamps[head];
+    }
+
+    private void grow() {
+      int n = bufs.length;
+      byte[][] newBufs = new byte[n * 2][];
+      long[] newStamps = new long[n * 2];
+      for (int i = 0; i < size; i++) {
+        int j = (head + i) & (n - 1);
+        newBufs[i] = bufs[j];
+        newStamps[i] = stamps[j];
+      }
+      bufs = newBufs;
+      stamps = newStamps;
+      head = 0;
     }
   }
 }
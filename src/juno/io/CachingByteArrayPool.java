@@ -0,0 +1,253 @@
+package juno.io;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ByteArrayPool} con un pequeño cargador de búferes por hilo delante
+ * del grupo compartido. La mayoría de los pares {@link #getBuf(int)} /
+ * {@link #returnBuf(byte[])} de un mismo hilo se resuelven en su cargador sin
+ * bloqueos. Cuando el cargador no tiene un búfer que sirva se rellena en lote
+ * con varios búferes de la misma clase del grupo compartido, y cuando se
+ * llena la mitad más antigua vuelve en lote al grupo compartido.
+ *
+ * <p>Cada cargador guarda como mucho {@code magazineSize} búferes de hasta
+ * 32 KiB, sin pasar de {@code magazineSize * 32 KiB} bytes ni del límite 
+ * del grupo; los búferes más grandes van directo al grupo compartido. Los
+ * bytes de los cargadores cuentan en {@link #getSize()}, así que el grupo
+ * compartido descarta búferes para compensarlos. Los cargadores de los
+ * hilos que terminaron se devuelven al grupo compartido cada vez que un
+ * hilo nuevo registra el suyo o que un cargador se vacía o se llena, así
+ * que sólo pueden quedar los de hilos que terminaron desde entonces.</p>
+ */
+public class CachingByteArrayPool extends ByteArrayPool {
+  private static final int DEFAULT_MAGAZINE_SIZE = 4;
+
+  /** Tamaño máximo de los búferes que se guardan en los cargadores. */
+  private static final int MAX_CACHED_LEN = 32 * 1024;
+
+  private final int mMagazineSize;
+
+  /** Bytes que puede guardar cada cargador como máximo. */
+  private final int mMagazineBytes;
+
+  /** Bytes guardados en todos los cargadores. */
+  private final AtomicInteger mCachedBytes = new AtomicInteger();
+
+  /** Cargadores de todos los hilos, para recuperar los de hilos terminados. */
+  private final ConcurrentLinkedQueue<Magazine> mAllMagazines = new ConcurrentLinkedQueue<Magazine>();
+
+  /** Indica si algún hilo está recorriendo {@link #mAllMagazines}. */
+  private final AtomicBoolean mReclaiming = new AtomicBoolean();
+
+  private final ThreadLocal<Magazine> mMagazines = new ThreadLocal<Magazine>() {
+    @Override protected Magazine initialValue() {
+      Magazine magazine = new Magazine(mMagazineSize, Thread.currentThread());
+      reclaim();
+      mAllMagazines.add(magazine);
+      return magazine;
+    }
+  };
+
+  /**
+   * @param sizeLimit el tamaño máximo del grupo, en bytes
+   */
+  public CachingByteArrayPool(int sizeLimit) {
+    this(sizeLimit, DEFAULT_MAGAZINE_SIZE);
+  }
+
+  /**
+   * @param sizeLimit el tamaño máximo del grupo, en bytes
+   * @param magazineSize cuántos búferes guarda cada hilo
+   */
+  public CachingByteArrayPool(int sizeLimit, int magazineSize) {
+    this(sizeLimit, sizeLimit, magazineSize);
+  }
+
+  /**
+   * @param sizeLimit el tamaño inicial máximo del grupo, en bytes
+   * @param maxSizeLimit el tamaño hasta el que puede crecer el límite
+   * @param magazineSize cuántos búferes guarda cada hilo
+   * @see ByteArrayPool#ByteArrayPool(int, int)
+   */
+  public CachingByteArrayPool(int sizeLimit, int maxSizeLimit, int magazineSize) {
+    super(sizeLimit, maxSizeLimit);
+    mMagazineSize = Math.max(1, magazineSize);
+    mMagazineBytes = mMagazineSize * MAX_CACHED_LEN;
+  }
+
+  /** El tamaño del grupo compartido más el de los cargadores, en bytes. */
+  @Override public int getSize() {
+    return super.getSize() + mCachedBytes.get();
+  }
+
+  @Override public byte[] getBuf(int len) {
+    if (len < 0) throw new IllegalArgumentException("len < 0: " + len);
+    if (len > MAX_CACHED_LEN) return super.getBuf(len);
+    Magazine magazine = mMagazines.get();
+    byte[] buf = magazine.take(len);
+    if (buf != null) {
+      mCachedBytes.addAndGet(-buf.length);
+      recordHit();
+      return buf;
+    }
+    return refill(magazine, len);
+  }
+
+  /**
+   * Saca varios búferes de la misma clase del grupo compartido: devuelve
+   * uno y guarda el resto en el cargador. Antes recupera los cargadores de
+   * los hilos terminados, que pueden tener búferes que sirvan.
+   */
+  private byte[] refill(Magazine magazine, int len) {
+    reclaim();
+    byte[][] batch = magazine.batch;
+    int n = drain(len, batch);
+    if (n == 0) return super.getBuf(len);
+    byte[] buf = batch[0];
+    batch[0] = null;
+    for (int i = 1; i < n; i++) {
+      byte[] extra = batch[i];
+      batch[i] = null;
+      if (magazine.fits(extra.length, magazineLimit())) {
+        magazine.push(extra);
+        mCachedBytes.addAndGet(extra.length);
+      } else {
+        super.returnBuf(extra);
+      }
+    }
+    return buf;
+  }
+
+  @Override public void returnBuf(byte[] buf) {
+    if (buf == null || buf.length == 0) {
+      return;
+    }
+    if (buf.length > MAX_CACHED_LEN || buf.length > getSizeLimit()) {
+      // El grupo compartido cuenta el rechazo y puede ampliar su límite.
+      super.returnBuf(buf);
+      return;
+    }
+    Magazine magazine = mMagazines.get();
+    if (!magazine.fits(buf.length, magazineLimit())) {
+      spill(magazine, buf.length);
+    }
+    magazine.push(buf);
+    mCachedBytes.addAndGet(buf.length);
+    if (getSize() > getSizeLimit()) trim();
+  }
+
+  /**
+   * Pasa al grupo compartido la mitad más antigua del cargador, o más si
+   * hace falta para que quepan {@code len} bytes. También recupera los
+   * cargadores de los hilos que terminaron.
+   */
+  private void spill(Magazine magazine, int len) {
+    int limit = magazineLimit();
+    int n = Math.max(1, magazine.count / 2);
+    while (n < magazine.count && magazine.bytes - magazine.bytesOf(n) + len > limit) {
+      n++;
+    }
+    mCachedBytes.addAndGet(-magazine.bytesOf(n));
+    for (int i = 0; i < n; i++) {
+      super.returnBuf(magazine.bufs[i]);
+    }
+    magazine.removeFirst(n);
+    reclaim();
+  }
+
+  /** Bytes que puede guardar cada cargador. */
+  private int magazineLimit() {
+    return Math.min(mMagazineBytes, getSizeLimit());
+  }
+
+  /**
+   * Devuelve al grupo compartido los cargadores de los hilos terminados. Si
+   * otro hilo ya los está recorriendo no hace nada.
+   */
+  private void reclaim() {
+    if (!mReclaiming.compareAndSet(false, true)) return;
+    try {
+      for (Iterator<Magazine> it = mAllMagazines.iterator(); it.hasNext();) {
+        Magazine magazine = it.next();
+        Thread owner = magazine.owner.get();
+        if (owner != null && owner.isAlive()) continue;
+        it.remove();
+        mCachedBytes.addAndGet(-magazine.bytes);
+        for (int i = 0; i < magazine.count; i++) {
+          super.returnBuf(magazine.bufs[i]);
+        }
+        magazine.removeFirst(magazine.count);
+      }
+    } finally {
+      mReclaiming.set(false);
+    }
+  }
+
+  /** Búferes de un hilo, del más antiguo al más reciente. */
+  private static final class Magazine {
+    final byte[][] bufs;
+    /** Búferes recibidos del grupo compartido al rellenar. */
+    final byte[][] batch;
+    final WeakReference<Thread> owner;
+    int count;
+    int bytes;
+
+    Magazine(int size, Thread owner) {
+      bufs = new byte[size][];
+      batch = new byte[Math.max(1, size / 2)][];
+      this.owner = new WeakReference<Thread>(owner);
+    }
+
+    /**
+     * Saca el búfer más reciente que sirva para {@code len} bytes. Como en
+     * el grupo compartido, sólo sirven los de su clase de tamaño o de la
+     * siguiente.
+     */
+    byte[] take(int len) {
+      int index = ByteArrayPool.ceilClass(len);
+      for (int i = count - 1; i >= 0; i--) {
+        byte[] buf = bufs[i];
+        int c = ByteArrayPool.floorClass(buf.length);
+        if (buf.length >= len && c <= index + 1) {
+          System.arraycopy(bufs, i + 1, bufs, i, count - i - 1);
+          bufs[--count] = null;
+          bytes -= buf.length;
+          return buf;
+        }
+      }
+      return null;
+    }
+
+    /** Indica si cabe un búfer de {@code len} bytes sin pasar de {@code limit}. */
+    boolean fits(int len, int limit) {
+      return count < bufs.length && bytes + len <= limit;
+    }
+
+    void push(byte[] buf) {
+      bufs[count++] = buf;
+      bytes += buf.length;
+    }
+
+    /** Bytes de los primeros {@code n} búferes. */
+    int bytesOf(int n) {
+      int total = 0;
+      for (int i = 0; i < n; i++) {
+        total += bufs[i].length;
+      }
+      return total;
+    }
+
+    void removeFirst(int n) {
+      bytes -= bytesOf(n);
+      System.arraycopy(bufs, n, bufs, 0, count - n);
+      for (int i = count - n; i < count; i++) {
+        bufs[i] = null;
+      }
+      count -= n;
+    }
+  }
+}
@@ -0,0 +1,436 @@
+package juno.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Flujos deflate y GZIP que toman prestados los {@link Deflater} e 
+ * {@link Inflater} de un grupo y sus búferes de {@link IOUtils#POOL}. Al
+ * cerrar el flujo el compresor se reinicia y vuelve al grupo, en lugar de 
+ * esperar a la finalización para liberar su memoria nativa.
+ *
+ * <pre>
+ * OutputStream out = Compression.gzip(new FileOutputStream(file));
+ * try {
+ *   IOUtils.copy(in, out);
+ * } finally {
+ *   IOUtils.closeQuietly(out);
+ * }
+ * </pre>
+ *
+ * <p>{@link #gunzip(InputStream)} lee todos los miembros GZIP concatenados,
+ * como {@link java.util.zip.GZIPInputStream}.</p>
+ */
+public final class Compression {
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Compresores guardados por grupo; los demás se liberan con {@code end()}. */
+  private static final int MAX_POOLED = 16;
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+  /** Compresores zlib. */
+  private static final CodecPool<Deflater> DEFLATERS = new DeflaterPool(false);
+  /** Compresores sin envoltura, para GZIP. */
+  private static final CodecPool<Deflater> RAW_DEFLATERS = new DeflaterPool(true);
+  private static final CodecPool<Inflater> INFLATERS = new InflaterPool(false);
+  private static final CodecPool<Inflater> RAW_INFLATERS = new InflaterPool(true);
+
+  private Compression() {
+  }
+
+  /** Comprime en formato zlib (deflate) con el nivel por defecto. */
+  public static DeflaterOutputStream deflate(OutputStream out) {
+    return deflate(out, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  public static DeflaterOutputStream deflate(OutputStream out, int level) {
+    return new PooledDeflaterOutputStream(out, DEFLATERS, level);
+  }
+
+  /** Descomprime un flujo zlib (deflate). */
+  public static InflaterInputStream inflate(InputStream in) {
+    return new PooledInflaterInputStream(in, INFLATERS);
+  }
+
+  /** Comprime en formato GZIP con el nivel por defecto. */
+  public static DeflaterOutputStream gzip(OutputStream out) throws IOException {
+    return gzip(out, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  public static DeflaterOutputStream gzip(OutputStream out, int level) throws IOException {
+    return new GzipOutputStream(out, level);
+  }
+
+  /** Descomprime un flujo GZIP. */
+  public static InflaterInputStream gunzip(InputStream in) throws IOException {
+    return new GzipInputStream(in);
+  }
+
+  /** Comprime los bytes en formato GZIP. */
+  public static byte[] gzip(byte[] data) throws IOException {
+    PoolingByteArrayOutputStream bytes = new PoolingByteArrayOutputStream(IOUtils.POOL, data.length / 2);
+    DeflaterOutputStream out = gzip(bytes);
+    try {
+      out.write(data);
+      out.finish();
+      return bytes.toByteArray();
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Descomprime bytes en formato GZIP. */
+  public static byte[] gunzip(byte[] data) throws IOException {
+    InputStream in = gunzip(new ByteArrayInputStream(data));
+    try {
+      return IOUtils.toByteArray(in, BUFFER_SIZE);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Grupo acotado de compresores. */
+  abstract static class CodecPool<T> {
+    private final ConcurrentLinkedQueue<T> codecs = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    abstract T create();
+
+    abstract void reset(T codec);
+
+    abstract void end(T codec);
+
+    T get() {
+      T codec = codecs.poll();
+      if (codec == null) return create();
+      size.decrementAndGet();
+      return codec;
+    }
+
+    void release(T codec) {
+      reset(codec);
+      if (size.incrementAndGet() <= MAX_POOLED) {
+        codecs.offer(codec);
+      } else {
+        size.decrementAndGet();
+        end(codec);
+      }
+    }
+  }
+
+  static final class DeflaterPool extends CodecPool<Deflater> {
+    final boolean nowrap;
+
+    DeflaterPool(boolean nowrap) {
+      this.nowrap = nowrap;
+    }
+
+    @Override Deflater create() {
+      return new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+    }
+
+    @Override void reset(Deflater codec) {
+      codec.reset();
+    }
+
+    @Override void end(Deflater codec) {
+      codec.end();
+    }
+  }
+
+  static final class InflaterPool extends CodecPool<Inflater> {
+    final boolean nowrap;
+
+    InflaterPool(boolean nowrap) {
+      this.nowrap = nowrap;
+    }
+
+    @Override Inflater create() {
+      return new Inflater(nowrap);
+    }
+
+    @Override void reset(Inflater codec) {
+      codec.reset();
+    }
+
+    @Override void end(Inflater codec) {
+      codec.end();
+    }
+  }
+
+  static class PooledDeflaterOutputStream extends DeflaterOutputStream {
+    private final CodecPool<Deflater> pool;
+    private boolean released;
+
+    PooledDeflaterOutputStream(OutputStream out, CodecPool<Deflater> pool, int level) {
+      super(out, pool.get(), 1);
+      this.pool = pool;
+      def.setLevel(level);
+      buf = IOUtils.getBuf(BUFFER_SIZE);
+    }
+
+    @Override public void write(int b) throws IOException {
+      ensureOpen();
+      super.write(b);
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      super.write(b, off, len);
+    }
+
+    @Override public void flush() throws IOException {
+      ensureOpen();
+      super.flush();
+    }
+
+    @Override public void finish() throws IOException {
+      ensureOpen();
+      super.finish();
+    }
+
+    @Override public void close() throws IOException {
+      if (released) return;
+      try {
+        super.close();
+      } finally {
+        release();
+      }
+    }
+
+    /** El compresor y el búfer ya pueden estar en uso por otro flujo. */
+    void ensureOpen() throws IOException {
+      if (released) throw new IOException("Stream closed");
+    }
+
+    /** Devuelve el compresor y el búfer a sus grupos, sin cerrar el flujo. */
+    void release() {
+      if (!released) {
+        released = true;
+        pool.release(def);
+        IOUtils.returnBuf(buf);
+      }
+    }
+  }
+
+  static class PooledInflaterInputStream extends InflaterInputStream {
+    private final CodecPool<Inflater> pool;
+    boolean released;
+
+    PooledInflaterInputStream(InputStream in, CodecPool<Inflater> pool) {
+      super(in, pool.get(), 1);
+      this.pool = pool;
+      buf = IOUtils.getBuf(BUFFER_SIZE);
+    }
+
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      // El descompresor y el búfer ya pueden estar en uso por otro flujo.
+      if (released) throw new IOException("Stream closed");
+      return super.read(b, off, len);
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (!released) {
+          released = true;
+          pool.release(inf);
+          IOUtils.returnBuf(buf);
+        }
+      }
+    }
+  }
+
+  static final class GzipOutputStream extends PooledDeflaterOutputStream {
+    private final CRC32 crc = new CRC32();
+
+    GzipOutputStream(OutputStream out, int level) throws IOException {
+      super(out, RAW_DEFLATERS, level);
+      try {
+        out.write(new byte[] {
+          (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+        });
+      } catch (IOException e) {
+        release();
+        throw e;
+      }
+    }
+
+    @Override public void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      crc.update(b, off, len);
+    }
+
+    @Override public void finish() throws IOException {
+      ensureOpen();
+      if (def.finished()) return;
+      super.finish();
+      byte[] trailer = new byte[8];
+      writeInt((int) crc.getValue(), trailer, 0);
+      writeInt(def.getTotalIn(), trailer, 4);
+      out.write(trailer);
+    }
+
+    private static void writeInt(int v, byte[] b, int off) {
+      b[off] = (byte) v;
+      b[off + 1] = (byte) (v >> 8);
+      b[off + 2] = (byte) (v >> 16);
+      b[off + 3] = (byte) (v >> 24);
+    }
+  }
+
+  /**
+   * Lee uno o más miembros GZIP seguidos. Los bytes que siguen al final de
+   * un miembro deben ser la cabecera de otro; si no, se lanza
+   * {@link ZipException}.
+   */
+  static final class GzipInputStream extends PooledInflaterInputStream {
+    private final CRC32 crc = new CRC32();
+    private boolean eos;
+    /** Bytes de {@code buf} que siguen al final del miembro anterior. */
+    private int extraPos, extraEnd;
+
+    GzipInputStream(InputStream in) throws IOException {
+      super(in, RAW_INFLATERS);
+      try {
+        readHeader();
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+    }
+
+    /**
+     * Descomprime sin depender del estado de fin de flujo de
+     * {@link InflaterInputStream}, que no se puede reiniciar al empezar el
+     * siguiente miembro.
+     */
+    @Override public int read(byte[] b, int off, int len) throws IOException {
+      if (released) throw new IOException("Stream closed");
+      if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+      if (eos) return -1;
+      if (len == 0) return 0;
+      try {
+        while (true) {
+          int n = inf.inflate(b, off, len);
+          if (n > 0) {
+            crc.update(b, off, n);
+            return n;
+          }
+          if (inf.finished()) {
+            readTrailer();
+            if (!nextMember()) {
+              eos = true;
+              return -1;
+            }
+          } else if (inf.needsDictionary()) {
+            throw new ZipException("Unexpected preset dictionary");
+          } else if (inf.needsInput()) {
+            fill();
+          }
+        }
+      } catch (DataFormatException e) {
+        throw new ZipException(e.getMessage());
+      }
+    }
+
+    @Override public int available() throws IOException {
+      if (released) throw new IOException("Stream closed");
+      return eos ? 0 : 1;
+    }
+
+    /**
+     * Empieza el siguiente miembro si hay más datos después del final del
+     * anterior.
+     * @return {@code false} al final del flujo
+     */
+    private boolean nextMember() throws IOException {
+      if (extraPos == extraEnd) {
+        int c = in.read();
+        if (c == -1) return false;
+        // Se lee la cabecera desde este byte.
+        buf[0] = (byte) c;
+        extraPos = 0;
+        extraEnd = 1;
+        len = 1;
+      }
+      readHeader();
+      inf.reset();
+      crc.reset();
+      if (extraPos < extraEnd) inf.setInput(buf, extraPos, extraEnd - extraPos);
+      extraPos = extraEnd = 0;
+      return true;
+    }
+
+    private void readHeader() throws IOException {
+      if (readUShort() != GZIP_MAGIC) throw new ZipException("Not in GZIP format");
+      if (readUByte() != Deflater.DEFLATED) throw new ZipException("Unsupported compression method");
+      int flags = readUByte();
+      skip(6); // MTIME, XFL, OS
+      if ((flags & FEXTRA) != 0) skip(readUShort());
+      if ((flags & FNAME) != 0) while (readUByte() != 0) { }
+      if ((flags & FCOMMENT) != 0) while (readUByte() != 0) { }
+      if ((flags & FHCRC) != 0) skip(2);
+    }
+
+    /** 
+     * Lee el CRC y el tamaño; sus bytes pueden estar aún en el búfer. Lo que
+     * queda en el búfer después del final es del siguiente miembro.
+     */
+    private void readTrailer() throws IOException {
+      int remaining = inf.getRemaining();
+      int pos = len - remaining;
+      byte[] trailer = new byte[8];
+      int n = Math.min(remaining, 8);
+      System.arraycopy(buf, pos, trailer, 0, n);
+      extraPos = pos + n;
+      extraEnd = len;
+      while (n < 8) {
+        int c = in.read(trailer, n, 8 - n);
+        if (c == -1) throw new EOFException("Unexpected end of GZIP trailer");
+        n += c;
+      }
+      long crcValue = readInt(trailer, 0) & 0xffffffffL;
+      int size = readInt(trailer, 4);
+      if (crcValue != crc.getValue() || size != inf.getTotalOut()) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+    }
+
+    private static int readInt(byte[] b, int off) {
+      return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8 
+              | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+
+    private int readUByte() throws IOException {
+      if (extraPos < extraEnd) return buf[extraPos++] & 0xff;
+      int b = in.read();
+      if (b == -1) throw new EOFException("Unexpected end of GZIP header");
+      return b;
+    }
+
+    private int readUShort() throws IOException {
+      int b = readUByte();
+      return readUByte() << 8 | b;
+    }
+
+    private void skip(int n) throws IOException {
+      while (n-- > 0) readUByte();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package juno.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Grupo de {@link ByteBuffer} directos (fuera del heap) para la E/S con
+ * canales. Un canal que lee o escribe un búfer del heap copia los datos a
+ * un búfer directo temporal, y crear búferes directos es lento; este grupo
+ * los reserva en bloques grandes ("slabs") que reparte en clases de tamaño
+ * potencia de dos.
+ *
+ * <p>A diferencia de {@link ByteArrayPool}, los búferes se deben devolver
+ * explícitamente con {@link #release(ByteBuffer)}. La memoria reservada en
+ * bloques nunca supera el límite indicado; cuando se alcanza, o el búfer
+ * pedido es mayor que un bloque, se crea un búfer directo que no pertenece
+ * al grupo y {@link #release(ByteBuffer)} lo ignora.</p>
+ */
+public class DirectByteBufferPool {
+  /** Clase de tamaño más pequeña, 4 KiB. */
+  private static final int MIN_CLASS = 12;
+  private static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+
+  private final int mSlabSize;
+  private final long mSizeLimit;
+  private final AtomicLong mAllocated = new AtomicLong();
+  private final SizeClass[] mClasses;
+
+  /**
+   * @param sizeLimit memoria directa máxima reservada por el grupo, en bytes
+   */
+  public DirectByteBufferPool(long sizeLimit) {
+    this(sizeLimit, DEFAULT_SLAB_SIZE);
+  }
+
+  /**
+   * @param sizeLimit memoria directa máxima reservada por el grupo, en bytes
+   * @param slabSize tamaño de cada bloque, potencia de dos de al menos 4 KiB;
+   * también es el búfer más grande que se agrupa
+   */
+  public DirectByteBufferPool(long sizeLimit, int slabSize) {
+    if (slabSize < (1 << MIN_CLASS) || Integer.bitCount(slabSize) != 1) {
+      throw new IllegalArgumentException("slabSize=" + slabSize);
+    }
+    mSizeLimit = sizeLimit;
+    mSlabSize = slabSize;
+    mClasses = new SizeClass[classOf(slabSize) + 1];
+    for (int i = 0; i < mClasses.length; i++) {
+      mClasses[i] = new SizeClass(1 << (i + MIN_CLASS));
+    }
+  }
+
+  /** Memoria directa reservada por el grupo, en bytes. */
+  public long getAllocated() {
+    return mAllocated.get();
+  }
+
+  /**
+   * Obtiene un búfer directo vacío de al menos {@code len} bytes.
+   *
+   * @param len el tamaño mínimo, en bytes
+   * @return el búfer, con la posición en cero y el límite en su capacidad
+   * @throws IllegalArgumentException si {@code len} es negativo
+   */
+  public ByteBuffer getBuffer(int len) {
+    if (len < 0) throw new IllegalArgumentException("len < 0: " + len);
+    if (len > mSlabSize) {
+      return ByteBuffer.allocateDirect(len);
+    }
+    SizeClass sizeClass = mClasses[classOf(len)];
+    ByteBuffer buf = sizeClass.take();
+    if (buf == null) {
+      if (mAllocated.addAndGet(mSlabSize) > mSizeLimit) {
+        mAllocated.addAndGet(-mSlabSize);
+        return ByteBuffer.allocateDirect(len);
+      }
+      sizeClass.addSlab(ByteBuffer.allocateDirect(mSlabSize));
+      buf = sizeClass.take();
+    }
+    buf.clear();
+    return buf;
+  }
+
+  /**
+   * Devuelve un búfer obtenido con {@link #getBuffer(int)}. Los búferes que
+   * no pertenecen al grupo o que ya se devolvieron se ignoran.
+   */
+  public void release(ByteBuffer buf) {
+    if (buf == null || !buf.isDirect() || buf.capacity() > mSlabSize
+            || Integer.bitCount(buf.capacity()) != 1
+            || buf.capacity() < (1 << MIN_CLASS)) {
+      return;
+    }
+    mClasses[classOf(buf.capacity())].put(buf);
+  }
+
+  private static int classOf(int len) {
+    int bits = len <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(len - 1);
+    return Math.max(0, bits - MIN_CLASS);
+  }
+
+  /** Búferes libres y prestados de una clase de tamaño. */
+  private static final class SizeClass {
+    final int size;
+    final ArrayDeque<ByteBuffer> free = new ArrayDeque<ByteBuffer>();
+    final Set<ByteBuffer> lent = 
+        Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+
+    SizeClass(int size) {
+      this.size = size;
+    }
+
+    synchronized ByteBuffer take() {
+      ByteBuffer buf = free.pollLast();
+      if (buf != null) lent.add(buf);
+      return buf;
+    }
+
+    synchronized void put(ByteBuffer buf) {
+      if (lent.remove(buf)) free.addLast(buf);
+    }
+
+    /** Corta el bloque en búferes de esta clase. */
+    synchronized void addSlab(ByteBuffer slab) {
+      for (int offset = 0; offset + size <= slab.capacity(); offset += size) {
+        slab.limit(offset + size);
+        slab.position(offset);
+        free.addLast(slab.slice());
+      }
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package juno.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caché del contenido de archivos que se leen una y otra vez, como
+ * configuraciones o plantillas. Antes de cada lectura se comparan la fecha
+ * de modificación y el tamaño del archivo con los del contenido guardado; si
+ * cambiaron, el archivo se vuelve a leer.
+ *
+ * <p>El tamaño total del contenido guardado no pasa del límite indicado; se
+ * descartan primero los archivos usados hace más tiempo. El texto que
+ * guarda {@link #toString(File, Charset)} cuenta dos bytes por carácter. Si varios hilos
+ * piden a la vez un archivo que no está en la caché, sólo uno lo lee y los
+ * demás esperan su resultado.</p>
+ *
+ * <pre>
+ * FileCache cache = new FileCache(16 * 1024 * 1024);
+ * String template = cache.toString(new File("templates/mail.html"));
+ * </pre>
+ */
+public class FileCache {
+  private final long mSizeLimit;
+  private long mSize;
+
+  /** Contenido guardado, en orden de uso. */
+  private final LinkedHashMap<String, Entry> mEntries = 
+      new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+  /** Lecturas en curso, para que sólo un hilo lea cada archivo. */
+  private final ConcurrentMap<String, FutureTask<Entry>> mLoading = 
+      new ConcurrentHashMap<String, FutureTask<Entry>>();
+
+  /**
+   * @param sizeLimit tamaño máximo del contenido guardado, en bytes
+   */
+  public FileCache(long sizeLimit) {
+    mSizeLimit = sizeLimit;
+  }
+
+  /** Lee el archivo; devuelve una copia que se puede modificar. */
+  public byte[] toByteArray(File file) throws IOException {
+    return entry(file.getAbsolutePath(), file).bytes.clone();
+  }
+
+  public String toString(File file) throws IOException {
+    return toString(file, Charset.defaultCharset());
+  }
+
+  /** 
+   * Lee el archivo como texto; el último texto decodificado también se 
+   * guarda y cuenta en el tamaño.
+   */
+  public String toString(File file, Charset charset) throws IOException {
+    String key = file.getAbsolutePath();
+    Entry entry = entry(key, file);
+    Object[] decoded = entry.decoded;
+    if (decoded != null && charset.equals(decoded[0])) return (String) decoded[1];
+    String string = new String(entry.bytes, charset);
+    synchronized (this) {
+      long old = entry.weight;
+      entry.decoded = new Object[] {charset, string};
+      entry.weight = entry.bytes.length + 2L * string.length();
+      if (mEntries.get(key) == entry) {
+        mSize += entry.weight - old;
+        trim();
+      }
+    }
+    return string;
+  }
+
+  /** Descarta el contenido guardado del archivo. */
+  public synchronized void invalidate(File file) {
+    Entry entry = mEntries.remove(file.getAbsolutePath());
+    if (entry != null) mSize -= entry.weight;
+  }
+
+  public synchronized void clear() {
+    mEntries.clear();
+    mSize = 0;
+  }
+
+  /** Tamaño del contenido y del texto guardados, en bytes. */
+  public synchronized long size() {
+    return mSize;
+  }
+
+  private Entry entry(final String key, final File file) throws IOException {
+    long lastModified = file.lastModified();
+    long length = file.length();
+    synchronized (this) {
+      Entry entry = mEntries.get(key);
+      if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+        return entry;
+      }
+    }
+    FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+      @Override public Entry call() throws IOException {
+        return load(key, file);
+      }
+    });
+    FutureTask<Entry> loading = mLoading.putIfAbsent(key, task);
+    if (loading == null) {
+      loading = task;
+      try {
+        task.run();
+      } finally {
+        mLoading.remove(key, task);
+      }
+    }
+    try {
+      return loading.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause.toString());
+    }
+  }
+
+  private Entry load(String key, File file) throws IOException {
+    // Se toman antes de leer para que un cambio durante la lectura se note.
+    long lastModified = file.lastModified();
+    long length = file.length();
+    Entry entry = new Entry(Files.toByteArray(file), lastModified, length);
+    synchronized (this) {
+      Entry old = mEntries.remove(key);
+      if (old != null) mSize -= old.weight;
+      if (entry.weight <= mSizeLimit) {
+        mEntries.put(key, entry);
+        mSize += entry.weight;
+        trim();
+      }
+    }
+    return entry;
+  }
+
+  /** Descarta el contenido usado hace más tiempo hasta quedar bajo el límite. */
+  private void trim() {
+    Iterator<Map.Entry<String, Entry>> it = mEntries.entrySet().iterator();
+    while (mSize > mSizeLimit && it.hasNext()) {
+      mSize -= it.next().getValue().weight;
+      it.remove();
+    }
+  }
+
+  private static final class Entry {
+    final byte[] bytes;
+    final long lastModified;
+    final long length;
+    /** Último texto decodificado y su juego de caracteres. */
+    volatile Object[] decoded;
+    /** Bytes que cuenta en el tamaño de la caché; protegido por la caché. */
+    long weight;
+
+    Entry(byte[] bytes, long lastModified, long length) {
+      this.bytes = bytes;
+      this.lastModified = lastModified;
+      this.length = length;
+      this.weight = bytes.length;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package juno.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+
+/**
+ * Sigue un archivo que crece, como {@code tail -F}. Recuerda la posición en
+ * bytes y en cada {@link #poll()} lee sólo lo que se agregó desde la última
+ * vez, con lecturas posicionales sobre el canal del archivo y un búfer de
+ * {@link IOUtils#POOL}, así que el costo depende de los datos nuevos y no
+ * del tamaño del archivo.
+ *
+ * <p>Cada línea completa se entrega al {@link Callback} en el ejecutor de
+ * entrega del {@link Dispatcher}, sin el salto de línea; una línea sin
+ * terminar espera al siguiente {@code poll()}. Las líneas se separan en el
+ * byte {@code \n}, así que el juego de caracteres debe ser compatible con
+ * ASCII (UTF-8, ISO-8859-1...).</p>
+ *
+ * <p>Si el archivo se trunca se vuelve a leer desde el principio. Si se
+ * rota (la ruta desaparece o apunta a un archivo más corto que el abierto)
+ * se terminan de leer los datos del archivo anterior y se abre el nuevo.</p>
+ *
+ * <pre>
+ * FileTailer tailer = new FileTailer(new File("/var/log/app.log"), callback);
+ * tailer.skipToEnd();
+ * tailer.schedule(scheduler, 1, TimeUnit.SECONDS);
+ * </pre>
+ */
+public class FileTailer implements Closeable {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final File file;
+  private final Charset charset;
+  private final Callback<String> callback;
+  private final Dispatcher dispatcher = Dispatcher.get();
+
+  private FileInputStream in;
+  private long offset;
+  /** Línea sin terminar que quedó de la lectura anterior. */
+  private PoolingByteArrayOutputStream partial;
+  private boolean closed;
+
+  public FileTailer(File file, Charset charset, Callback<String> callback) {
+    if (callback == null) throw new NullPointerException("callback == null");
+    this.file = file;
+    this.charset = charset;
+    this.callback = callback;
+  }
+
+  public FileTailer(File file, Callback<String> callback) {
+    this(file, Charset.defaultCharset(), callback);
+  }
+
+  /** Posición en bytes hasta la que se leyó el archivo. */
+  public synchronized long offset() {
+    return offset;
+  }
+
+  /** Ignora el contenido actual; sólo se entregarán las líneas nuevas. */
+  public synchronized FileTailer skipToEnd() throws IOException {
+    FileChannel channel = channel();
+    offset = channel != null ? channel.size() : 0;
+    discardPartial();
+    return this;
+  }
+
+  /**
+   * Lee los bytes agregados desde la última llamada y entrega las líneas
+   * completas.
+   * @return cantidad de líneas entregadas
+   */
+  public synchronized int poll() throws IOException {
+    if (closed) throw new IOException("FileTailer closed");
+    FileChannel channel = channel();
+    if (channel == null) return 0;
+
+    byte[] buf = IOUtils.getBuf(BUFFER_SIZE);
+    try {
+      int lines = 0;
+      long size = channel.size();
+      if (size < offset) {
+        // Truncado: se vuelve a empezar.
+        offset = 0;
+        discardPartial();
+      }
+      lines += read(channel, size, buf);
+
+      if (rotated(size)) {
+        // Lo que se escribió antes de rotar.
+        lines += read(channel, channel.size(), buf);
+        if (partial != null && partial.size() > 0) {
+          emit(partial.toByteArray(), 0, partial.size());
+          lines++;
+        }
+        discardPartial();
+        IOUtils.closeQuietly(in);
+        in = null;
+        offset = 0;
+        channel = channel();
+        if (channel != null) lines += read(channel, channel.size(), buf);
+      }
+      return lines;
+    } finally {
+      IOUtils.returnBuf(buf);
+    }
+  }
+
+  /**
+   * Llama a {@link #poll()} periódicamente. Si ocurre un error se entrega a
+   * {@link Callback#onFailure(Exception)} y se detiene el seguimiento.
+   * @return la tarea programada, para cancelarla
+   */
+  public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+    return scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override public void run() {
+        try {
+          poll();
+        } catch (IOException e) {
+          dispatcher.onFailure(callback, e);
+          throw new IllegalStateException(e); // cancela las siguientes ejecuciones
+        }
+      }
+    }, 0, period, unit);
+  }
+
+  /** Lee desde {@code offset} hasta {@code size} y separa las líneas. */
+  private int read(FileChannel channel, long size, byte[] buf) throws IOException {
+    int lines = 0;
+    ByteBuffer buffer = ByteBuffer.wrap(buf);
+    while (offset < size) {
+      buffer.clear();
+      if (size - offset < buf.length) buffer.limit((int) (size - offset));
+      int count = channel.read(buffer, offset);
+      if (count <= 0) break;
+      offset += count;
+
+      int start = 0;
+      for (int i = 0; i < count; i++) {
+        if (buf[i] != '\n') continue;
+        if (partial != null && partial.size() > 0) {
+          partial.write(buf, start, i - start);
+          emit(partial.toByteArray(), 0, partial.size());
+          partial.reset();
+        } else {
+          emit(buf, start, i - start);
+        }
+        lines++;
+        start = i + 1;
+      }
+      if (start < count) {
+        if (partial == null) partial = new PoolingByteArrayOutputStream(IOUtils.POOL);
+        partial.write(buf, start, count - start);
+      }
+    }
+    return lines;
+  }
+
+  private void emit(byte[] bytes, int off, int len) {
+    if (len > 0 && bytes[off + len - 1] == '\r') len--;
+    dispatcher.onResponse(callback, new String(bytes, off, len, charset));
+  }
+
+  /**
+   * Indica si la ruta ya no corresponde al archivo abierto: desapareció o
+   * es más corta que lo que se leyó del archivo abierto.
+   */
+  private boolean rotated(long size) {
+    return !file.exists() ? in != null : file.length() < size;
+  }
+
+  /** Canal del archivo, abierto la primera vez; {@code null} si no existe. */
+  private FileChannel channel() throws IOException {
+    if (in == null) {
+      if (!file.exists()) return null;
+      in = new FileInputStream(file);
+    }
+    return in.getChannel();
+  }
+
+  private void discardPartial() {
+    if (partial != null) partial.reset();
+  }
+
+  @Override public synchronized void close() {
+    closed = true;
+    IOUtils.closeQuietly(in);
+    in = null;
+    IOUtils.closeQuietly(partial);
+    partial = null;
+  }
+}
@@ -0,0 +1,186 @@
+package juno.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recorre un árbol de directorios en paralelo. Cada directorio se lista en
+ * una tarea propia y sus archivos se visitan en lotes, con un número
+ * máximo de hilos, así que los árboles con muchos archivos pequeños no
+ * quedan limitados por la latencia de una llamada al sistema tras otra.
+ *
+ * <pre>
+ * int count = new FileWalker(8).walk(root, new FileWalker.Visitor() {
+ *   &#64;Override public void visit(File file) throws IOException {
+ *     ...
+ *   }
+ * });
+ * </pre>
+ */
+public class FileWalker {
+  /** Archivos que visita cada tarea. */
+  private static final int BATCH_SIZE = 256;
+
+  /** Recibe cada archivo; se llama desde varios hilos a la vez. */
+  public interface Visitor {
+    void visit(File file) throws IOException;
+  }
+
+  /**
+   * Visitante que además recibe cada directorio aceptado, incluida la raíz,
+   * antes que cualquier archivo o directorio que contenga.
+   */
+  public interface DirectoryVisitor extends Visitor {
+    void visitDirectory(File dir) throws IOException;
+  }
+
+  private final int parallelism;
+  private final FileFilter filter;
+
+  public FileWalker(int parallelism) {
+    this(parallelism, null);
+  }
+
+  /**
+   * @param parallelism cantidad máxima de hilos
+   * @param filter filtro de archivos y directorios; un directorio rechazado
+   * no se recorre. Puede ser {@code null}
+   */
+  public FileWalker(int parallelism, FileFilter filter) {
+    if (parallelism < 1) throw new IllegalArgumentException("parallelism=" + parallelism);
+    this.parallelism = parallelism;
+    this.filter = filter;
+  }
+
+  /**
+   * Visita todos los archivos bajo {@code root} y espera a que terminen.
+   * Los enlaces simbólicos a directorios no se siguen. Si una visita falla,
+   * el recorrido se detiene y se lanza el primer error.
+   *
+   * @return cantidad de archivos visitados
+   */
+  public int walk(File root, Visitor visitor) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "juno FileWalker");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      Walk walk = new Walk(executor, visitor);
+      walk.submitDirectory(root);
+      walk.await();
+      return walk.visited.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private boolean accept(File file) {
+    return filter == null || filter.accept(file);
+  }
+
+  /** Estado de un recorrido. */
+  private final class Walk {
+    final ExecutorService executor;
+    final Visitor visitor;
+    final AtomicInteger pending = new AtomicInteger();
+    final AtomicInteger visited = new AtomicInteger();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    Walk(ExecutorService executor, Visitor visitor) {
+      this.executor = executor;
+      this.visitor = visitor;
+    }
+
+    void submit(Runnable task) {
+      pending.incrementAndGet();
+      executor.execute(task);
+    }
+
+    void submitDirectory(final File dir) {
+      submit(new Runnable() {
+        @Override public void run() {
+          try {
+            if (error.get() == null) listDirectory(dir);
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          } finally {
+            taskDone();
+          }
+        }
+      });
+    }
+
+    void submitFiles(final File[] files, final int from, final int to) {
+      submit(new Runnable() {
+        @Override public void run() {
+          try {
+            for (int i = from; i < to && error.get() == null; i++) {
+              visitor.visit(files[i]);
+              visited.incrementAndGet();
+            }
+          } catch (Throwable t) {
+            error.compareAndSet(null, t);
+          } finally {
+            taskDone();
+          }
+        }
+      });
+    }
+
+    void listDirectory(File dir) throws IOException {
+      if (visitor instanceof DirectoryVisitor) {
+        ((DirectoryVisitor) visitor).visitDirectory(dir);
+      }
+      File[] children = dir.listFiles();
+      if (children == null) throw new IOException("Cannot list " + dir);
+      File[] files = new File[children.length];
+      int count = 0;
+      for (File child : children) {
+        if (!accept(child)) continue;
+        if (child.isDirectory()) {
+          if (!isSymlink(child)) submitDirectory(child);
+        } else {
+          files[count++] = child;
+        }
+      }
+      for (int i = 0; i < count; i += BATCH_SIZE) {
+        submitFiles(files, i, Math.min(i + BATCH_SIZE, count));
+      }
+    }
+
+    void taskDone() {
+      if (pending.decrementAndGet() == 0) done.countDown();
+    }
+
+    void await() throws IOException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted");
+      }
+      Throwable t = error.get();
+      if (t instanceof IOException) throw (IOException) t;
+      if (t instanceof RuntimeException) throw (RuntimeException) t;
+      if (t instanceof Error) throw (Error) t;
+    }
+  }
+
+  /** Valida si el archivo es un enlace simbólico, comparando su ruta canónica. */
+  static boolean isSymlink(File file) throws IOException {
+    File parent = file.getParentFile();
+    File canonicalDir = parent == null ? file : new File(parent.getCanonicalFile(), file.getName());
+    return !canonicalDir.getCanonicalFile().equals(canonicalDir.getAbsoluteFile());
+  }
+}
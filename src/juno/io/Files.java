@@ -2,12 +2,34 @@ package juno.io;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Checksum;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
 
 /**
  *
@@ -28,6 +50,141 @@ public final class Files {
     }
   }
   
+  /**
+   * Lee muchos archivos a la vez con un máximo de {@code parallelism} hilos,
+   * para mantener varias lecturas en la cola del disco. Cada arreglo se crea
+   * del tamaño del archivo y se llena con lecturas posicionales.
+   *
+   * @return el contenido de cada archivo, en el orden de {@code files}
+   * @throws IOException el primer error; las lecturas pendientes se cancelan
+   */
+  public static Map<File, byte[]> readAll(Collection<File> files, int parallelism) throws IOException {
+    final File[] array = files.toArray(new File[files.size()]);
+    final byte[][] results = new byte[array.length][];
+    final AtomicReference<Exception> error = new AtomicReference<Exception>();
+    readAll(array, parallelism, error, null, results);
+    Exception e = error.get();
+    if (e instanceof IOException) throw (IOException) e;
+    if (e instanceof RuntimeException) throw (RuntimeException) e;
+    Map<File, byte[]> map = new LinkedHashMap<File, byte[]>(array.length * 4 / 3 + 1);
+    for (int i = 0; i < array.length; i++) {
+      map.put(array[i], results[i]);
+    }
+    return map;
+  }
+  
+  /**
+   * Como {@link #readAll(Collection, int)}, pero entrega cada archivo al
+   * {@code callback} en cuanto se termina de leer, sin guardar el lote
+   * completo en memoria. Como en {@link AsyncFiles}, el callback se llama
+   * en el ejecutor de entrega del {@link Dispatcher}; un archivo que no se
+   * puede leer se entrega a {@link Callback#onFailure(Exception)} y el lote
+   * continúa. Regresa cuando se leyeron todos los archivos, aunque puede
+   * haber entregas pendientes.
+   */
+  public static void readAll(Collection<File> files, int parallelism, 
+          Callback<Map.Entry<File, byte[]>> callback) throws IOException {
+    if (callback == null) throw new NullPointerException("callback == null");
+    readAll(files.toArray(new File[files.size()]), parallelism, null, callback, null);
+  }
+  
+  /**
+   * Reparte los archivos entre los hilos; cada hilo toma el siguiente índice
+   * libre hasta terminar.
+   * @param error si no es {@code null}, guarda el primer error y detiene el lote
+   * @param callback recibe cada archivo; puede ser {@code null}
+   * @param results si no es {@code null}, guarda el contenido por índice
+   */
+  private static void readAll(final File[] files, int parallelism, 
+          final AtomicReference<Exception> error,
+          final Callback<Map.Entry<File, byte[]>> callback, 
+          final byte[][] results) throws IOException {
+    if (parallelism < 1) throw new IllegalArgumentException("parallelism=" + parallelism);
+    if (files.length == 0) return;
+    int threads = Math.min(parallelism, files.length);
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      @Override public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "juno Files.readAll");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final Dispatcher dispatcher = callback != null ? Dispatcher.get() : null;
+    final AtomicInteger next = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(threads);
+    try {
+      for (int t = 0; t < threads; t++) {
+        executor.execute(new Runnable() {
+          @Override public void run() {
+            try {
+              int i;
+              while ((i = next.getAndIncrement()) < files.length) {
+                if (error != null && error.get() != null) return;
+                byte[] data;
+                try {
+                  data = readFully(files[i]);
+                } catch (Exception e) {
+                  if (error != null) error.compareAndSet(null, e);
+                  else dispatcher.onFailure(callback, e);
+                  continue;
+                }
+                if (results != null) results[i] = data;
+                if (callback == null) continue;
+                dispatcher.onResponse(callback, new AbstractMap.SimpleImmutableEntry<File, byte[]>(files[i], data));
+              }
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+      }
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted");
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+  
+  /**
+   * Lee el archivo en un arreglo del tamaño del archivo. Si el tamaño es 0
+   * (archivos especiales que no informan su tamaño) o el archivo crece
+   * mientras se lee, se termina de leer con un búfer del grupo.
+   */
+  static byte[] readFully(File file) throws IOException {
+    FileInputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("File too large: " + file);
+      if (size == 0) return IOUtils.toByteArray(in);
+      
+      byte[] data = new byte[(int) size];
+      ByteBuffer buffer = ByteBuffer.wrap(data);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()) == -1) {
+          // El archivo se acortó después de abrirlo.
+          return Arrays.copyOf(data, buffer.position());
+        }
+      }
+      if (channel.size() == size) return data;
+      
+      PoolingByteArrayOutputStream bytes = new PoolingByteArrayOutputStream(IOUtils.POOL, data.length * 2);
+      try {
+        bytes.write(data);
+        channel.position(size);
+        IOUtils.copy(in, bytes);
+        return bytes.toByteArray();
+      } finally {
+        bytes.close();
+      }
+    } finally {
+      closeQuietly(in);
+    }
+  }
+  
   public static char[] toCharArray(File file) throws IOException {
     FileInputStream in = null;
     try {
@@ -38,6 +195,16 @@ public final class Files {
     }
   }
   
+  public static char[] toCharArray(File file, Charset charset) throws IOException {
+    FileInputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      return IOUtils.toCharArray(in, charset);
+    } finally {
+      closeQuietly(in);
+    }
+  }
+  
   public static String toString(File file, Charset charset) throws IOException {
     FileInputStream in = null;
     try {
@@ -62,6 +229,44 @@ public final class Files {
     }
   }
   
+  /** 
+   * Mapea el archivo completo en memoria para solo lectura.
+   * @throws IOException si el archivo pasa de 2 GB; en ese caso use 
+   * {@link MappedFile}
+   */
+  public static MappedByteBuffer map(File file) throws IOException {
+    return map(file, 0, file.length());
+  }
+  
+  /** Mapea una región del archivo, de hasta 2 GB, para solo lectura. */
+  public static MappedByteBuffer map(File file, long position, long size) throws IOException {
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Region too large to map: " + size + " bytes");
+    }
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      // El mapeo sigue siendo válido después de cerrar el archivo.
+      return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, position, size);
+    } finally {
+      closeQuietly(raf);
+    }
+  }
+  
+  /** Abre el archivo para leerlo línea por línea con {@link LineReader}. */
+  public static LineReader lines(File file, Charset charset) throws IOException {
+    return new LineReader(new FileInputStream(file), charset);
+  }
+  
+  public static LineReader lines(File file) throws IOException {
+    return lines(file, Charset.defaultCharset());
+  }
+  
+  /** Abre el archivo para leer registros separados por {@code delimiter}. */
+  public static LineReader records(File file, Charset charset, String delimiter) throws IOException {
+    return new LineReader(new FileInputStream(file), charset, delimiter);
+  }
+  
   public static void write(File file, CharSequence cs, boolean append) throws IOException {
     FileWriter fw = null;
     try {
@@ -81,39 +286,162 @@ public final class Files {
     return null;
   }
     
+  /** Bytes que se transfieren por llamada a {@code transferTo}. */
+  private static final long MAX_TRANSFER = 8 * 1024 * 1024;
+  
+  /** Búfer máximo para las copias que no pueden usar canales. */
+  private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+    
+  /**
+   * Copia un archivo a otro. Los bytes se transfieren entre los canales de
+   * los archivos dentro del kernel, sin pasar por el espacio de usuario.
+   */
   public static void copy(File from, File to) throws IOException {
-    OutputStream out = null;
+    FileInputStream in = null;
+    FileOutputStream out = null;
     try {
+      in = new FileInputStream(from);
       out = new FileOutputStream(to);
-      copy(from, out);
+      copy(in.getChannel(), out.getChannel());
     } finally {
+      closeQuietly(in);
       closeQuietly(out);
     }
   }
   
+  /**
+   * Copia un archivo a un flujo. Si el flujo es un {@link FileOutputStream}
+   * se usa su canal; si no, se copia con un búfer del grupo.
+   */
   public static void copy(File from, OutputStream out) throws IOException {
+    if (out instanceof FileOutputStream) {
+      copy(from, ((FileOutputStream) out).getChannel());
+      return;
+    }
     FileInputStream in = null;
-    byte[] buffer = null;
     try {
       in = new FileInputStream(from);
-      int bytesAvailable = in.available();
-      
-      int maxBufferSize = 1024 * 1024;
-      int bufferSize = Math.min(bytesAvailable, maxBufferSize);
-      buffer = IOUtils.getBuf(bufferSize);
-      
-      int count = in.read(buffer, 0, bufferSize);
-      while (count > 0) {
-        out.write(buffer, 0, bufferSize);
-        bytesAvailable = in.available();
-        bufferSize = Math.min(bytesAvailable, maxBufferSize);
-        count = in.read(buffer, 0, bufferSize);
-      }
+      long length = from.length();
+      int bufferSize = length > 0 ? (int) Math.min(length, MAX_BUFFER_SIZE) : 8192;
+      IOUtils.copy(in, out, bufferSize);
+    } finally {
+      closeQuietly(in);
+    }
+  }
+  
+  /**
+   * Copia un archivo a otro y calcula la suma de verificación de los bytes
+   * copiados. Usa un búfer del grupo en lugar de {@code transferTo}, porque
+   * los bytes tienen que pasar por el espacio de usuario.
+   * @return el valor de la suma de verificación
+   */
+  public static long copy(File from, File to, Checksum checksum) throws IOException {
+    FileInputStream in = null;
+    FileOutputStream out = null;
+    try {
+      in = new FileInputStream(from);
+      out = new FileOutputStream(to);
+      return IOUtils.copy(in, out, checksum);
+    } finally {
+      closeQuietly(in);
+      closeQuietly(out);
+    }
+  }
+  
+  /** Copia un archivo a otro y calcula el resumen de los bytes copiados. */
+  public static byte[] copy(File from, File to, MessageDigest digest) throws IOException {
+    FileInputStream in = null;
+    FileOutputStream out = null;
+    try {
+      in = new FileInputStream(from);
+      out = new FileOutputStream(to);
+      return IOUtils.copy(in, out, digest);
+    } finally {
+      closeQuietly(in);
+      closeQuietly(out);
+    }
+  }
+  
+  /** Copia un archivo a un canal con {@link FileChannel#transferTo}. */
+  public static void copy(File from, WritableByteChannel to) throws IOException {
+    FileInputStream in = null;
+    try {
+      in = new FileInputStream(from);
+      copy(in.getChannel(), to);
     } finally {
-      IOUtils.returnBuf(buffer);
       closeQuietly(in);
     }
   }
+  
+  /** Copia el contenido de un canal a un archivo con {@link FileChannel#transferFrom}. */
+  public static void copy(ReadableByteChannel from, File to) throws IOException {
+    FileOutputStream out = null;
+    try {
+      out = new FileOutputStream(to);
+      FileChannel channel = out.getChannel();
+      long position = 0;
+      long count;
+      while ((count = channel.transferFrom(from, position, MAX_TRANSFER)) > 0) {
+        position += count;
+      }
+    } finally {
+      closeQuietly(out);
+    }
+  }
+  
+  /**
+   * Copia un árbol de directorios en paralelo, incluidos los directorios
+   * vacíos. Cada archivo se copia con {@link #copy(File, File)}.
+   *
+   * @param from directorio de origen
+   * @param to directorio de destino; se crea si no existe. No puede ser
+   * {@code from} ni estar dentro de él
+   * @param filter filtro de archivos y directorios, puede ser {@code null}
+   * @param parallelism cantidad máxima de hilos
+   * @return cantidad de archivos copiados
+   * @throws IOException si {@code to} está dentro de {@code from}, o si
+   * falla la copia
+   */
+  public static int copyTree(File from, File to, FileFilter filter, int parallelism) throws IOException {
+    String source = from.getCanonicalPath();
+    if (!source.endsWith(File.separator)) source += File.separator;
+    if ((to.getCanonicalPath() + File.separator).startsWith(source)) {
+      // Si no, la copia se copiaría a sí misma sin fin.
+      throw new IOException("Cannot copy " + from + " into itself: " + to);
+    }
+    final String root = from.getAbsolutePath();
+    final File target = to.getAbsoluteFile();
+    return new FileWalker(parallelism, filter).walk(from, new FileWalker.DirectoryVisitor() {
+      @Override public void visitDirectory(File dir) throws IOException {
+        File dest = new File(target, dir.getAbsolutePath().substring(root.length()));
+        if (!dest.isDirectory() && !dest.mkdirs() && !dest.isDirectory()) {
+          throw new IOException("Cannot create " + dest);
+        }
+      }
+      
+      @Override public void visit(File file) throws IOException {
+        // El directorio del archivo se creó al visitarlo.
+        copy(file, new File(target, file.getAbsolutePath().substring(root.length())));
+      }
+    });
+  }
+  
+  /**
+   * Transfiere desde la posición actual del canal hasta el final.
+   * @return cantidad de bytes copiados
+   */
+  static long copy(FileChannel from, WritableByteChannel to) throws IOException {
+    long start = from.position();
+    long position = start;
+    long size = from.size();
+    while (position < size) {
+      long count = from.transferTo(position, Math.min(size - position, MAX_TRANSFER), to);
+      if (count <= 0) break; // el archivo se truncó mientras se copiaba
+      position += count;
+    }
+    from.position(position);
+    return position - start;
+  }
 
   public static void closeQuietly(Closeable closeable) {
     IOUtils.closeQuietly(closeable);
@@ -7,11 +7,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
 
 public final class IOUtils {
 
-  public static final ByteArrayPool POOL = new ByteArrayPool(4096);
+  /** 
+   * Búferes compartidos. Empieza con 4 KiB y crece hasta 4 MiB según los 
+   * búferes que se le devuelven; {@link ByteArrayPool#toString()} muestra
+   * sus contadores.
+   */
+  public static final ByteArrayPool POOL = 
+      new CachingByteArrayPool(4096, 4 * 1024 * 1024, 4);
+  
+  /** Búferes directos para copiar entre canales. */
+  public static final DirectByteBufferPool DIRECT_POOL = 
+      new DirectByteBufferPool(8 * 1024 * 1024);
 
   private IOUtils() {
   }
@@ -23,6 +38,11 @@ public final class IOUtils {
     return new PoolingByteArrayOutputStream(POOL, size);
   }
 
+  /** Flujo en memoria por segmentos, para contenidos grandes. */
+  public static SegmentedOutputStream segmentedOutputStream() {
+    return new SegmentedOutputStream(POOL);
+  }
+
   public static byte[] getBuf(int bufferSize) {
     return POOL.getBuf(bufferSize);
   }
@@ -32,18 +52,89 @@ public final class IOUtils {
 
   
   public static void copy(InputStream from, OutputStream out) throws IOException {
+    copy(from, out, 1024);
+  }
+  
+  public static void copy(InputStream from, OutputStream out, int bufferSize) throws IOException {
+    if (from == null) throw new IOException("source == null");
+    byte[] buffer = getBuf(bufferSize);
+    try {
+      int count;
+      while ((count = from.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+    } finally {
+      returnBuf(buffer);
+    }
+  }
+  
+  /**
+   * Copia el flujo y calcula su suma de verificación en la misma pasada,
+   * por ejemplo con {@link java.util.zip.CRC32} o {@link java.util.zip.Adler32}.
+   * Para verificar al leer o escribir por partes use 
+   * {@link java.util.zip.CheckedInputStream} o 
+   * {@link java.util.zip.CheckedOutputStream}.
+   * @return el valor de la suma de verificación
+   */
+  public static long copy(InputStream from, OutputStream out, Checksum checksum) throws IOException {
+    if (from == null) throw new IOException("source == null");
+    byte[] buffer = getBuf(8192);
+    try {
+      int count;
+      while ((count = from.read(buffer)) != -1) {
+        checksum.update(buffer, 0, count);
+        out.write(buffer, 0, count);
+      }
+      return checksum.getValue();
+    } finally {
+      returnBuf(buffer);
+    }
+  }
+  
+  /**
+   * Copia el flujo y calcula su resumen en la misma pasada, por ejemplo con
+   * {@code MessageDigest.getInstance("SHA-256")}.
+   * @return el resumen
+   * @see java.security.DigestInputStream
+   */
+  public static byte[] copy(InputStream from, OutputStream out, MessageDigest digest) throws IOException {
     if (from == null) throw new IOException("source == null");
-    byte[] buffer = getBuf(1024);
+    byte[] buffer = getBuf(8192);
     try {
       int count;
       while ((count = from.read(buffer)) != -1) {
+        digest.update(buffer, 0, count);
         out.write(buffer, 0, count);
       }
+      return digest.digest();
     } finally {
       returnBuf(buffer);
     }
   }
   
+  /**
+   * Copia el contenido de un canal a otro a través de un búfer directo del
+   * {@link #DIRECT_POOL}, sin pasar por el heap.
+   * @return cantidad de bytes copiados
+   */
+  public static long copy(ReadableByteChannel from, WritableByteChannel to) throws IOException {
+    if (from == null) throw new IOException("source == null");
+    ByteBuffer buffer = DIRECT_POOL.getBuffer(64 * 1024);
+    try {
+      long total = 0;
+      while (from.read(buffer) != -1) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          total += to.write(buffer);
+        }
+        buffer.clear();
+      }
+      return total;
+    } finally {
+      DIRECT_POOL.release(buffer);
+    }
+  }
+  
   public static InputStream inputStream(final HttpURLConnection hurlc) {
     InputStream inputStream;
     try {
@@ -78,27 +169,46 @@ public final class IOUtils {
     }
   }
   
-  public static char[] toCharArray(InputStream in) throws IOException {
-    byte[] data = toByteArray(in);
-    char[] chars = new char[data.length];
-    for (int i = 0; i < data.length; i++) {
-      chars[i] = (char) data[i];      
+  /**
+   * Lee todo el flujo a un búfer del grupo sin la copia final de 
+   * {@link #toByteArray(InputStream)}. Se debe cerrar el resultado para 
+   * devolver el búfer.
+   */
+  public static PooledBytes toPooledBytes(InputStream source) throws IOException {
+    if (source == null) throw new IOException("source == null");
+    PoolingByteArrayOutputStream bytes = new PoolingByteArrayOutputStream(POOL, source.available());
+    try {
+      copy(source, bytes);
+      return bytes.detach();
+    } finally {
+      bytes.close();
     }
-    return chars;
   }
   
+  /** Lee el flujo como texto en el juego de caracteres por defecto. */
+  public static char[] toCharArray(InputStream in) throws IOException {
+    return toCharArray(in, Charset.defaultCharset());
+  }
+  
+  public static char[] toCharArray(InputStream in, Charset charset) throws IOException {
+    return TextDecoder.decodeToChars(in, charset);
+  }
+  
+  /** Lee el flujo como texto en el juego de caracteres por defecto. */
   public static String toString(InputStream in) throws IOException {
-    byte[] data = toByteArray(in);
-    return new String(data);
+    return toString(in, Charset.defaultCharset());
   }
    
   public static String toString(InputStream in, String charset) throws IOException {
     return IOUtils.toString(in, Charset.forName(charset));
   }
   
+  /**
+   * Lee el flujo como texto, decodificándolo a medida que se lee y sin
+   * guardar antes todos los bytes.
+   */
   public static String toString(InputStream in, Charset charset) throws IOException {
-    byte[] data = toByteArray(in);
-    return new String(data, charset);
+    return TextDecoder.decode(in, charset);
   }
   
   public static void closeQuietly(Closeable closeable) {
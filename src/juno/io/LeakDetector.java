@@ -0,0 +1,95 @@
+package juno.io;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detecta objetos con búferes del grupo que el recolector liberó sin que se
+ * cerraran, por ejemplo un {@link PoolingByteArrayOutputStream} sin 
+ * {@code close()}. Se sigue uno de cada {@link #setSampleInterval(int)}
+ * objetos y, al detectar una fuga, se registra en el {@link Logger} 
+ * {@code juno.io.LeakDetector} la traza del lugar donde se creó.
+ *
+ * <p>Está desactivado por defecto; se activa con
+ * {@code -Djuno.io.leakSampleInterval=N} o con 
+ * {@link #setSampleInterval(int)}. Las fugas se comprueban cada vez que se
+ * sigue un objeto nuevo.</p>
+ */
+public final class LeakDetector {
+  private static final Logger LOGGER = Logger.getLogger(LeakDetector.class.getName());
+
+  private static volatile int sampleInterval = Integer.getInteger("juno.io.leakSampleInterval", 0);
+
+  private static final AtomicInteger COUNTER = new AtomicInteger();
+  private static final ReferenceQueue<Object> QUEUE = new ReferenceQueue<Object>();
+
+  /** Mantiene vivas las referencias hasta que se cierran o se reportan. */
+  private static final Set<Tracker> TRACKERS = 
+      Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+
+  private LeakDetector() {
+  }
+
+  /**
+   * Sigue uno de cada {@code interval} objetos; {@code 1} los sigue todos y
+   * {@code 0} desactiva la detección.
+   */
+  public static void setSampleInterval(int interval) {
+    sampleInterval = interval;
+  }
+
+  public static int getSampleInterval() {
+    return sampleInterval;
+  }
+
+  /**
+   * Empieza a seguir el objeto si le toca en el muestreo.
+   * @return el seguimiento, que se debe cerrar junto con el objeto, o
+   * {@code null} si el objeto no se sigue
+   */
+  static Tracker track(Object owner) {
+    int interval = sampleInterval;
+    if (interval <= 0 || COUNTER.incrementAndGet() % interval != 0) {
+      return null;
+    }
+    poll();
+    Tracker tracker = new Tracker(owner);
+    TRACKERS.add(tracker);
+    return tracker;
+  }
+
+  /** Reporta los objetos liberados sin cerrar. */
+  static void poll() {
+    Tracker tracker;
+    while ((tracker = (Tracker) QUEUE.poll()) != null) {
+      if (TRACKERS.remove(tracker)) {
+        LOGGER.log(Level.WARNING, "LEAK: " + tracker.type 
+                + " was garbage collected without close()", tracker.allocation);
+      }
+    }
+  }
+
+  /** Seguimiento de un objeto. */
+  static final class Tracker extends PhantomReference<Object> {
+    final String type;
+    final Throwable allocation;
+
+    Tracker(Object owner) {
+      super(owner, QUEUE);
+      type = owner.getClass().getName();
+      allocation = new Throwable("Allocated at");
+    }
+
+    /** El objeto se cerró correctamente. */
+    void close() {
+      TRACKERS.remove(this);
+      clear();
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package juno.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Lee un flujo de texto línea por línea, o por registros separados por un 
+ * delimitador propio, con memoria constante sin importar el tamaño.
+ *
+ * <p>Los bytes se leen en un búfer de {@link IOUtils#POOL} y cada registro
+ * se devuelve como un {@link CharSequence} reutilizable, válido hasta la
+ * siguiente llamada a {@link #next()}. Use {@link #nextString()} o 
+ * {@code toString()} cuando necesite conservar el texto.</p>
+ *
+ * <pre>
+ * LineReader reader = Files.lines(new File("/var/log/app.log"));
+ * try {
+ *   CharSequence line;
+ *   while ((line = reader.next()) != null) {
+ *     ...
+ *   }
+ * } finally {
+ *   reader.close();
+ * }
+ * </pre>
+ */
+public class LineReader implements Closeable {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final InputStream in;
+  private final CharsetDecoder decoder;
+  /** Delimitador, o {@code null} para líneas terminadas en \n o \r\n. */
+  private final String delimiter;
+
+  private byte[] bytes;
+  private final ByteBuffer byteBuf;
+  private final CharBuffer chars;
+  private final Record record = new Record();
+  /** El flujo llegó al final. */
+  private boolean eof;
+  /** Se decodificaron todos los bytes y falta vaciar el decodificador. */
+  private boolean flushing;
+  /** El decodificador entregó todos los caracteres. */
+  private boolean done;
+
+  /** Lee líneas terminadas en {@code \n} o {@code \r\n}. */
+  public LineReader(InputStream in, Charset charset) {
+    this(in, charset, null);
+  }
+
+  /**
+   * Lee registros separados por {@code delimiter}.
+   * @param delimiter el separador, o {@code null} para leer líneas
+   */
+  public LineReader(InputStream in, Charset charset, String delimiter) {
+    if (delimiter != null && delimiter.length() == 0) {
+      throw new IllegalArgumentException("delimiter is empty");
+    }
+    this.in = in;
+    this.delimiter = delimiter;
+    this.decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.bytes = IOUtils.getBuf(BUFFER_SIZE);
+    this.byteBuf = ByteBuffer.wrap(bytes);
+    this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    this.chars.flip();
+  }
+
+  /**
+   * Lee el siguiente registro, sin el delimitador.
+   * @return una vista válida hasta la siguiente lectura, o {@code null} al 
+   * llegar al final
+   */
+  public CharSequence next() throws IOException {
+    record.length = 0;
+    boolean read = false;
+    while (true) {
+      while (chars.hasRemaining()) {
+        read = true;
+        record.append(chars.get());
+        if (endsWithDelimiter()) return record;
+      }
+      if (done) {
+        return read ? record : null;
+      }
+      fill();
+    }
+  }
+
+  /** Lee el siguiente registro como un {@code String}, o {@code null}. */
+  public String nextString() throws IOException {
+    CharSequence cs = next();
+    return cs != null ? cs.toString() : null;
+  }
+
+  /** Quita el delimitador del final del registro si lo tiene. */
+  private boolean endsWithDelimiter() {
+    char[] buf = record.chars;
+    int len = record.length;
+    if (delimiter == null) {
+      if (buf[len - 1] != '\n') return false;
+      len--;
+      if (len > 0 && buf[len - 1] == '\r') len--;
+      record.length = len;
+      return true;
+    }
+    int n = delimiter.length();
+    if (len < n || buf[len - 1] != delimiter.charAt(n - 1)) return false;
+    for (int i = 0; i < n - 1; i++) {
+      if (buf[len - n + i] != delimiter.charAt(i)) return false;
+    }
+    record.length = len - n;
+    return true;
+  }
+
+  /**
+   * Lee y decodifica el siguiente bloque de bytes. El búfer del grupo puede
+   * tener más bytes de los que caben en {@code chars}, así que al final del
+   * flujo se sigue decodificando en las siguientes llamadas hasta vaciarlo,
+   * y sólo entonces se vacía el decodificador.
+   */
+  private void fill() throws IOException {
+    chars.clear();
+    while (chars.position() == 0 && !done) {
+      if (!eof) {
+        int count = in.read(bytes, byteBuf.position(), byteBuf.remaining());
+        if (count == -1) {
+          eof = true;
+        } else {
+          byteBuf.position(byteBuf.position() + count);
+        }
+      }
+      if (!flushing) {
+        byteBuf.flip();
+        CoderResult result = decoder.decode(byteBuf, chars, eof);
+        byteBuf.compact();
+        flushing = eof && result.isUnderflow();
+      }
+      if (flushing && decoder.flush(chars).isUnderflow()) {
+        done = true;
+      }
+    }
+    chars.flip();
+  }
+
+  /** Devuelve el búfer al grupo y cierra el flujo. */
+  @Override public void close() throws IOException {
+    if (bytes != null) {
+      IOUtils.returnBuf(bytes);
+      bytes = null;
+    }
+    in.close();
+  }
+
+  /** Registro reutilizable. */
+  static final class Record implements CharSequence {
+    char[] chars = new char[128];
+    int length;
+
+    void append(char c) {
+      if (length == chars.length) {
+        char[] newChars = new char[length * 2];
+        System.arraycopy(chars, 0, newChars, 0, length);
+        chars = newChars;
+      }
+      chars[length++] = c;
+    }
+
+    @Override public int length() {
+      return length;
+    }
+
+    @Override public char charAt(int index) {
+      if (index >= length) throw new IndexOutOfBoundsException("index=" + index);
+      return chars[index];
+    }
+
+    @Override public CharSequence subSequence(int start, int end) {
+      if (end > length) throw new IndexOutOfBoundsException("end=" + end);
+      return new String(chars, start, end - start);
+    }
+
+    @Override public String toString() {
+      return new String(chars, 0, length);
+    }
+  }
+}
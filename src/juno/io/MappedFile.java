@@ -0,0 +1,175 @@
+package juno.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Archivo mapeado en memoria para solo lectura. Los datos se leen desde la
+ * caché de páginas del sistema sin copiarlos al heap, así que se pueden 
+ * recorrer archivos de varios GB con un heap constante.
+ *
+ * <p>Un {@link MappedByteBuffer} no puede pasar de 2 GB, por eso el archivo
+ * se divide en ventanas de {@code windowSize} bytes que se mapean la primera
+ * vez que se usan.</p>
+ *
+ * <pre>
+ * MappedFile mf = new MappedFile(new File("/data/big.bin"));
+ * try {
+ *   for (long i = 0; i &lt; mf.size(); i++) {
+ *     byte b = mf.get(i);
+ *   }
+ * } finally {
+ *   mf.close();
+ * }
+ * </pre>
+ */
+public class MappedFile implements Closeable {
+  /** Tamaño de ventana por defecto, 1 GB. */
+  public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final long size;
+  private final int windowSize;
+  private final AtomicReferenceArray<MappedByteBuffer> windows;
+
+  public MappedFile(File file) throws IOException {
+    this(file, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * @param file el archivo
+   * @param windowSize tamaño de cada ventana, en bytes
+   */
+  public MappedFile(File file, int windowSize) throws IOException {
+    if (windowSize <= 0) throw new IllegalArgumentException("windowSize=" + windowSize);
+    this.file = new RandomAccessFile(file, "r");
+    this.channel = this.file.getChannel();
+    this.size = channel.size();
+    this.windowSize = windowSize;
+    long count = (size + windowSize - 1) / windowSize;
+    this.windows = new AtomicReferenceArray<MappedByteBuffer>((int) count);
+  }
+
+  /** Tamaño del archivo al abrirlo, en bytes. */
+  public long size() {
+    return size;
+  }
+
+  public int windowSize() {
+    return windowSize;
+  }
+
+  public int windowCount() {
+    return windows.length();
+  }
+
+  /** 
+   * Obtiene una vista de solo lectura de la ventana, con su propia posición.
+   * @param index número de ventana, desde cero
+   */
+  public ByteBuffer window(int index) throws IOException {
+    return mapped(index).asReadOnlyBuffer();
+  }
+
+  /** Obtiene el byte de la posición indicada. */
+  public byte get(long position) throws IOException {
+    if (position < 0 || position >= size) {
+      throw new IndexOutOfBoundsException("position=" + position + ", size=" + size);
+    }
+    return mapped((int) (position / windowSize)).get((int) (position % windowSize));
+  }
+
+  /**
+   * Obtiene una vista de solo lectura de una región del archivo. Si la 
+   * región cae dentro de una ventana se comparte su mapeo; si no, se mapea
+   * la región aparte.
+   */
+  public ByteBuffer slice(long position, int length) throws IOException {
+    if (position < 0 || length < 0 || position + length > size) {
+      throw new IndexOutOfBoundsException("position=" + position + ", length=" + length);
+    }
+    int index = (int) (position / windowSize);
+    int offset = (int) (position % windowSize);
+    if (offset + length <= windowSize) {
+      ByteBuffer window = window(index);
+      window.position(offset);
+      window.limit(offset + length);
+      return window.slice();
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, position, length).asReadOnlyBuffer();
+  }
+
+  /**
+   * Obtiene una región del archivo como texto, sin copiarla. Cada byte es
+   * un carácter, así que sólo es correcto para ASCII o ISO-8859-1.
+   */
+  public CharSequence asCharSequence(long position, int length) throws IOException {
+    return new ByteCharSequence(slice(position, length));
+  }
+
+  private MappedByteBuffer mapped(int index) throws IOException {
+    MappedByteBuffer window = windows.get(index);
+    if (window == null) {
+      long position = (long) index * windowSize;
+      long length = Math.min(windowSize, size - position);
+      window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+      if (!windows.compareAndSet(index, null, window)) {
+        window = windows.get(index);
+      }
+    }
+    return window;
+  }
+
+  /** 
+   * Cierra el archivo. Las vistas ya obtenidas siguen siendo válidas hasta 
+   * que el recolector libera el mapeo.
+   */
+  @Override public void close() throws IOException {
+    file.close();
+  }
+
+  /** Texto de un byte por carácter sobre un {@link ByteBuffer}. */
+  static final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer buf;
+
+    ByteCharSequence(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override public int length() {
+      return buf.remaining();
+    }
+
+    @Override public char charAt(int index) {
+      if (index < 0 || index >= buf.remaining()) {
+        throw new IndexOutOfBoundsException("index=" + index);
+      }
+      return (char) (buf.get(buf.position() + index) & 0xFF);
+    }
+
+    @Override public CharSequence subSequence(int start, int end) {
+      if (start < 0 || end > length() || start > end) {
+        throw new IndexOutOfBoundsException("start=" + start + ", end=" + end);
+      }
+      ByteBuffer dup = buf.duplicate();
+      dup.position(buf.position() + start);
+      dup.limit(buf.position() + end);
+      return new ByteCharSequence(dup.slice());
+    }
+
+    @Override public String toString() {
+      char[] chars = new char[length()];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = charAt(i);
+      }
+      return new String(chars);
+    }
+  }
+}
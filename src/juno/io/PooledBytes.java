@@ -0,0 +1,72 @@
+package juno.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Bytes guardados en un búfer de un {@link ByteArrayPool}. Quien recibe
+ * una instancia es dueño del búfer y debe llamar a {@link #close()} para 
+ * devolverlo al grupo cuando ya no lo use; las vistas obtenidas dejan de ser
+ * válidas en ese momento.
+ *
+ * @see PoolingByteArrayOutputStream#detach()
+ */
+public final class PooledBytes implements Closeable {
+  private final ByteArrayPool pool;
+  private byte[] buf;
+  private final int length;
+  private final LeakDetector.Tracker tracker;
+
+  PooledBytes(ByteArrayPool pool, byte[] buf, int length) {
+    this.pool = pool;
+    this.buf = buf;
+    this.length = length;
+    this.tracker = LeakDetector.track(this);
+  }
+
+  /** Cantidad de bytes válidos. */
+  public int length() {
+    return length;
+  }
+
+  /** 
+   * El búfer interno; sólo los primeros {@link #length()} bytes son válidos
+   * y puede ser más grande.
+   */
+  public byte[] array() {
+    return checkOpen();
+  }
+
+  /** Vista de solo lectura de los bytes, sin copiarlos. */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(checkOpen(), 0, length).slice().asReadOnlyBuffer();
+  }
+
+  /** Flujo de lectura de los bytes, sin copiarlos. */
+  public InputStream inputStream() {
+    return new ByteArrayInputStream(checkOpen(), 0, length);
+  }
+
+  /** Copia los bytes a un arreglo nuevo de tamaño exacto. */
+  public byte[] toByteArray() {
+    byte[] result = new byte[length];
+    System.arraycopy(checkOpen(), 0, result, 0, length);
+    return result;
+  }
+
+  private byte[] checkOpen() {
+    if (buf == null) throw new IllegalStateException("closed");
+    return buf;
+  }
+
+  /** Devuelve el búfer al grupo. Llamarlo más de una vez no tiene efecto. */
+  @Override public void close() {
+    if (buf != null) {
+      pool.returnBuf(buf);
+      buf = null;
+      if (tracker != null) tracker.close();
+    }
+  }
+}
@@ -17,10 +17,13 @@ package juno.io;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A variation of {@link java.io.ByteArrayOutputStream} that uses a pool of
  * byte[] buffers instead of always allocating them fresh, saving on heap churn.
+ * The buffer goes back to the pool only on {@link #close()}; streams that are
+ * never closed are reported by the {@link LeakDetector} when it is enabled.
  */
 public class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
 
@@ -30,7 +33,9 @@ public class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
    * initialized.
    */
   private static final int DEFAULT_SIZE = 256;
+  private static final byte[] EMPTY = new byte[0];
   private final ByteArrayPool mPool;
+  private LeakDetector.Tracker mTracker;
 
   /**
    * Constructs a new PoolingByteArrayOutputStream with a default size. If more
@@ -51,18 +56,44 @@ public class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
   public PoolingByteArrayOutputStream(ByteArrayPool pool, int size) {
     mPool = pool;
     buf = mPool.getBuf(Math.max(size, DEFAULT_SIZE));
+    mTracker = LeakDetector.track(this);
   }
 
-  @Override
-  public void close() throws IOException {
-    mPool.returnBuf(buf);
-    buf = null;
-    super.close();
+  /**
+   * Returns a read-only view of the bytes written so far, without copying
+   * them. The view is only valid until the next write, reset or close.
+   */
+  public synchronized ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(buf, 0, count).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Transfers the underlying buffer, with the bytes written so far, to the
+   * caller without copying it. The caller must close the returned
+   * {@link PooledBytes} to give the buffer back to the pool. This stream is
+   * left empty and takes a new buffer on the next write.
+   */
+  public synchronized PooledBytes detach() {
+    PooledBytes bytes = new PooledBytes(mPool, buf, count);
+    buf = EMPTY;
+    count = 0;
+    // The PooledBytes owns the buffer now; an empty stream cannot leak.
+    if (mTracker != null) {
+      mTracker.close();
+      mTracker = null;
+    }
+    return bytes;
   }
 
+  /** Returns the buffer to the pool. Closing twice has no effect. */
   @Override
-  public void finalize() {
-    mPool.returnBuf(buf);
+  public synchronized void close() throws IOException {
+    if (buf != null) {
+      mPool.returnBuf(buf);
+      buf = null;
+      if (mTracker != null) mTracker.close();
+    }
+    super.close();
   }
 
   /**
@@ -74,6 +105,10 @@ public class PoolingByteArrayOutputStream extends ByteArrayOutputStream {
     if (count + i <= buf.length) {
       return;
     }
+    if (buf == EMPTY) {
+      // Owns a pooled buffer again after detach().
+      mTracker = LeakDetector.track(this);
+    }
     byte[] newbuf = mPool.getBuf((count + i) * 2);
     System.arraycopy(buf, 0, newbuf, 0, count);
     mPool.returnBuf(buf);
@@ -0,0 +1,152 @@
+package juno.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flujo de salida en memoria formado por segmentos de tamaño fijo tomados 
+ * de un {@link ByteArrayPool}. A diferencia de 
+ * {@link PoolingByteArrayOutputStream}, crecer sólo agrega un segmento: lo 
+ * escrito nunca se copia a un arreglo más grande.
+ *
+ * <p>El contenido se envía con {@link #writeTo(OutputStream)} o con una 
+ * escritura agrupada a un canal con {@link #writeTo(WritableByteChannel)}; 
+ * {@link #toByteArray()} crea un arreglo contiguo sólo cuando se pide. Al
+ * cerrarlo los segmentos vuelven al grupo. No es seguro entre hilos.</p>
+ */
+public class SegmentedOutputStream extends OutputStream {
+  private static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+  private final ByteArrayPool mPool;
+  private final int mSegmentSize;
+  private final List<byte[]> mSegments = new ArrayList<byte[]>();
+
+  /** Bytes usados del último segmento. */
+  private int mPos;
+  private long mSize;
+  private final LeakDetector.Tracker mTracker;
+
+  public SegmentedOutputStream(ByteArrayPool pool) {
+    this(pool, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param pool grupo de donde se toman los segmentos
+   * @param segmentSize tamaño mínimo de cada segmento, en bytes
+   */
+  public SegmentedOutputStream(ByteArrayPool pool, int segmentSize) {
+    if (segmentSize <= 0) throw new IllegalArgumentException("segmentSize=" + segmentSize);
+    mPool = pool;
+    mSegmentSize = segmentSize;
+    mTracker = LeakDetector.track(this);
+  }
+
+  /** Cantidad de bytes escritos. */
+  public long size() {
+    return mSize;
+  }
+
+  @Override public void write(int b) {
+    byte[] segment = current();
+    segment[mPos++] = (byte) b;
+    mSize++;
+  }
+
+  @Override public void write(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || off + len > b.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      byte[] segment = current();
+      int n = Math.min(len, segment.length - mPos);
+      System.arraycopy(b, off, segment, mPos, n);
+      mPos += n;
+      mSize += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /** Último segmento, agregando uno nuevo si el actual está lleno. */
+  private byte[] current() {
+    int last = mSegments.size() - 1;
+    if (last >= 0 && mPos < mSegments.get(last).length) {
+      return mSegments.get(last);
+    }
+    byte[] segment = mPool.getBuf(mSegmentSize);
+    mSegments.add(segment);
+    mPos = 0;
+    return segment;
+  }
+
+  /** Bytes usados del segmento {@code i}. */
+  private int used(int i) {
+    return i == mSegments.size() - 1 ? mPos : mSegments.get(i).length;
+  }
+
+  /** Escribe todo el contenido en el flujo. */
+  public void writeTo(OutputStream out) throws IOException {
+    for (int i = 0; i < mSegments.size(); i++) {
+      out.write(mSegments.get(i), 0, used(i));
+    }
+  }
+
+  /**
+   * Escribe todo el contenido en el canal. Si el canal admite escrituras
+   * agrupadas, todos los segmentos se envían en una sola llamada.
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    ByteBuffer[] buffers = new ByteBuffer[mSegments.size()];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = ByteBuffer.wrap(mSegments.get(i), 0, used(i));
+    }
+    if (channel instanceof GatheringByteChannel) {
+      GatheringByteChannel gathering = (GatheringByteChannel) channel;
+      long remaining = mSize;
+      while (remaining > 0) {
+        remaining -= gathering.write(buffers);
+      }
+    } else {
+      for (ByteBuffer buffer : buffers) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+    }
+  }
+
+  /** Copia el contenido a un arreglo nuevo de tamaño exacto. */
+  public byte[] toByteArray() {
+    if (mSize > Integer.MAX_VALUE) {
+      throw new IllegalStateException("Too large for an array: " + mSize + " bytes");
+    }
+    byte[] result = new byte[(int) mSize];
+    int offset = 0;
+    for (int i = 0; i < mSegments.size(); i++) {
+      int n = used(i);
+      System.arraycopy(mSegments.get(i), 0, result, offset, n);
+      offset += n;
+    }
+    return result;
+  }
+
+  /** Descarta el contenido y devuelve los segmentos al grupo. */
+  public void reset() {
+    for (byte[] segment : mSegments) {
+      mPool.returnBuf(segment);
+    }
+    mSegments.clear();
+    mPos = 0;
+    mSize = 0;
+  }
+
+  @Override public void close() {
+    reset();
+    if (mTracker != null) mTracker.close();
+  }
+}
@@ -0,0 +1,154 @@
+package juno.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Decodifica un flujo a texto a medida que se lee. Los bytes pasan por un
+ * búfer de {@link IOUtils#POOL} y los caracteres por un arreglo que cada 
+ * hilo reutiliza. En juegos compatibles con ASCII (UTF-8, US-ASCII, 
+ * ISO-8859-1) los tramos ASCII se copian de ocho en ocho bytes y sólo el 
+ * resto pasa por el {@link CharsetDecoder}.
+ */
+final class TextDecoder {
+  private static final int BUFFER_SIZE = 8192;
+
+  /** Arreglos más grandes no se conservan entre llamadas. */
+  private static final int MAX_CACHED_CHARS = 64 * 1024;
+
+  private static final ThreadLocal<char[]> CHARS = new ThreadLocal<char[]>() {
+    @Override protected char[] initialValue() {
+      return new char[BUFFER_SIZE];
+    }
+  };
+
+  private char[] out;
+  private int count;
+
+  private TextDecoder(InputStream in) throws IOException {
+    if (in == null) throw new IOException("source == null");
+    int sizeHint = in.available();
+    out = CHARS.get();
+    if (out.length < sizeHint) out = new char[sizeHint];
+  }
+
+  static String decode(InputStream in, Charset charset) throws IOException {
+    TextDecoder decoder = new TextDecoder(in);
+    try {
+      decoder.read(in, charset);
+      return new String(decoder.out, 0, decoder.count);
+    } finally {
+      decoder.release();
+    }
+  }
+
+  static char[] decodeToChars(InputStream in, Charset charset) throws IOException {
+    TextDecoder decoder = new TextDecoder(in);
+    try {
+      decoder.read(in, charset);
+      return Arrays.copyOf(decoder.out, decoder.count);
+    } finally {
+      decoder.release();
+    }
+  }
+
+  private static boolean isAsciiCompatible(Charset charset) {
+    String name = charset.name();
+    return "UTF-8".equals(name) || "US-ASCII".equals(name) || "ISO-8859-1".equals(name);
+  }
+
+  private void read(InputStream in, Charset charset) throws IOException {
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    boolean ascii = isAsciiCompatible(charset);
+    byte[] bytes = IOUtils.getBuf(BUFFER_SIZE);
+    try {
+      ByteBuffer byteBuf = ByteBuffer.wrap(bytes);
+      boolean eof = false;
+      while (!eof) {
+        int n = in.read(bytes, byteBuf.position(), byteBuf.remaining());
+        if (n == -1) {
+          eof = true;
+        } else {
+          byteBuf.position(byteBuf.position() + n);
+        }
+        byteBuf.flip();
+        if (ascii) copyAscii(bytes, byteBuf);
+        decode(decoder, byteBuf, eof);
+        byteBuf.compact();
+      }
+      CharBuffer chars = CharBuffer.wrap(out, count, out.length - count);
+      while (decoder.flush(chars).isOverflow()) {
+        chars = grow(chars);
+      }
+      count = chars.position();
+    } finally {
+      IOUtils.returnBuf(bytes);
+    }
+  }
+
+  /** Copia el tramo ASCII del principio del búfer de bytes. */
+  private void copyAscii(byte[] bytes, ByteBuffer byteBuf) {
+    int i = byteBuf.position();
+    int end = byteBuf.limit();
+    ensure(end - i);
+    char[] chars = out;
+    int c = count;
+    while (i + 8 <= end && (bytes[i] | bytes[i + 1] | bytes[i + 2] | bytes[i + 3]
+            | bytes[i + 4] | bytes[i + 5] | bytes[i + 6] | bytes[i + 7]) >= 0) {
+      chars[c] = (char) bytes[i];
+      chars[c + 1] = (char) bytes[i + 1];
+      chars[c + 2] = (char) bytes[i + 2];
+      chars[c + 3] = (char) bytes[i + 3];
+      chars[c + 4] = (char) bytes[i + 4];
+      chars[c + 5] = (char) bytes[i + 5];
+      chars[c + 6] = (char) bytes[i + 6];
+      chars[c + 7] = (char) bytes[i + 7];
+      i += 8;
+      c += 8;
+    }
+    while (i < end && bytes[i] >= 0) {
+      chars[c++] = (char) bytes[i++];
+    }
+    count = c;
+    byteBuf.position(i);
+  }
+
+  /** Decodifica lo que queda en el búfer, dejando las secuencias incompletas. */
+  private void decode(CharsetDecoder decoder, ByteBuffer byteBuf, boolean eof) {
+    if (!byteBuf.hasRemaining() && !eof) return;
+    CharBuffer chars = CharBuffer.wrap(out, count, out.length - count);
+    while (true) {
+      CoderResult result = decoder.decode(byteBuf, chars, eof);
+      if (!result.isOverflow()) break;
+      chars = grow(chars);
+    }
+    count = chars.position();
+  }
+
+  private void ensure(int n) {
+    if (out.length - count < n) {
+      out = Arrays.copyOf(out, Math.max(out.length * 2, count + n));
+    }
+  }
+
+  private CharBuffer grow(CharBuffer chars) {
+    count = chars.position();
+    ensure(Math.max(BUFFER_SIZE, out.length));
+    return CharBuffer.wrap(out, count, out.length - count);
+  }
+
+  /** Conserva el arreglo para el siguiente uso del hilo si no es muy grande. */
+  private void release() {
+    if (out.length <= MAX_CACHED_CHARS) CHARS.set(out);
+    out = null;
+  }
+}
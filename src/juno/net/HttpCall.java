@@ -0,0 +1,253 @@
+package juno.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import juno.concurrent.AsyncCall;
+import juno.concurrent.Dispatcher;
+import juno.io.IOUtils;
+import juno.io.PooledBytes;
+import juno.io.PoolingByteArrayOutputStream;
+
+/**
+ * Llamada HTTP que lee el cuerpo de la respuesta a búferes del grupo, o lo
+ * pasa directo a un flujo de salida, con un límite de tamaño. La respuesta
+ * se entrega al {@link juno.concurrent.Callback} como cualquier
+ * {@link AsyncCall}, y el progreso de la descarga se publica para los
+ * {@link juno.concurrent.ProgressCallback}.
+ *
+ * <p>Al terminar de leer el cuerpo sólo se cierra el flujo, sin desconectar,
+ * para que {@link HttpURLConnection} reutilice la conexión (keep-alive).</p>
+ *
+ * <pre>
+ * HttpCall call = new HttpCall("http://example.com/data.json");
+ * call.setMaxBodySize(1024 * 1024);
+ * call.execute(new Callback&lt;HttpCall.Response&gt;() {
+ *   &#64;Override public void onResponse(HttpCall.Response response) {
+ *     try {
+ *       String json = response.bodyString(Charset.forName("UTF-8"));
+ *     } finally {
+ *       response.close();
+ *     }
+ *   }
+ *   ...
+ * });
+ * </pre>
+ */
+public class HttpCall extends AsyncCall<HttpCall.Response> {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final URL url;
+  private String method = "GET";
+  private final Map<String, String> headers = new LinkedHashMap<String, String>();
+  private byte[] body;
+  private long maxBodySize = Long.MAX_VALUE;
+  private OutputStream sink;
+  private int connectTimeout = 15000;
+  private int readTimeout = 30000;
+
+  public HttpCall(String url) throws IOException {
+    this(new URL(url));
+  }
+
+  public HttpCall(URL url) {
+    this(url, Dispatcher.get());
+  }
+
+  public HttpCall(URL url, Dispatcher dispatcher) {
+    super(dispatcher);
+    this.url = url;
+  }
+
+  public HttpCall setMethod(String method) {
+    this.method = method;
+    return this;
+  }
+
+  public HttpCall setHeader(String name, String value) {
+    headers.put(name, value);
+    return this;
+  }
+
+  /** Cuerpo de la petición, por ejemplo para POST. */
+  public HttpCall setBody(byte[] body) {
+    this.body = body;
+    return this;
+  }
+
+  /**
+   * Tamaño máximo del cuerpo de la respuesta. Si se pasa, la llamada falla
+   * con una {@link IOException} sin terminar de leerlo.
+   */
+  public HttpCall setMaxBodySize(long maxBodySize) {
+    this.maxBodySize = maxBodySize;
+    return this;
+  }
+
+  /**
+   * Escribe el cuerpo de la respuesta en {@code sink} en lugar de guardarlo;
+   * {@link Response#body()} será {@code null}. El flujo no se cierra.
+   */
+  public HttpCall setSink(OutputStream sink) {
+    this.sink = sink;
+    return this;
+  }
+
+  /** Tiempos de espera de conexión y de lectura, en milisegundos. */
+  public HttpCall setTimeouts(int connectTimeout, int readTimeout) {
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    return this;
+  }
+
+  @Override public Response doInBackground() throws Exception {
+    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    boolean reusable = false;
+    try {
+      conn.setRequestMethod(method);
+      conn.setConnectTimeout(connectTimeout);
+      conn.setReadTimeout(readTimeout);
+      for (Map.Entry<String, String> header : headers.entrySet()) {
+        conn.setRequestProperty(header.getKey(), header.getValue());
+      }
+      if (body != null) {
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(body.length);
+        OutputStream out = conn.getOutputStream();
+        try {
+          out.write(body);
+        } finally {
+          out.close();
+        }
+      }
+
+      int code = conn.getResponseCode();
+      long contentLength = contentLength(conn);
+      if (contentLength > maxBodySize) {
+        throw new IOException("Response body too large: " + contentLength + " bytes");
+      }
+      InputStream in = code >= 400 ? conn.getErrorStream() : conn.getInputStream();
+      PooledBytes bytes = null;
+      if (in != null) {
+        try {
+          bytes = readBody(in, contentLength);
+        } finally {
+          in.close();
+        }
+      }
+      reusable = true;
+      return new Response(code, conn.getResponseMessage(), conn.getHeaderFields(), bytes);
+    } finally {
+      // Desconectar cierra el socket; sólo se hace si no se leyó todo el cuerpo.
+      if (!reusable) conn.disconnect();
+    }
+  }
+
+  private static long contentLength(HttpURLConnection conn) {
+    String value = conn.getHeaderField("Content-Length");
+    if (value == null) return -1;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** Lee el cuerpo a {@link #sink} o a un búfer del grupo. */
+  private PooledBytes readBody(InputStream in, long contentLength) throws IOException {
+    OutputStream out = sink;
+    PoolingByteArrayOutputStream bytes = null;
+    if (out == null) {
+      int size = contentLength > 0 && contentLength < Integer.MAX_VALUE ? (int) contentLength : 0;
+      bytes = new PoolingByteArrayOutputStream(IOUtils.POOL, size);
+      out = bytes;
+    }
+    byte[] buffer = IOUtils.getBuf(BUFFER_SIZE);
+    try {
+      long total = 0;
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        total += count;
+        if (total > maxBodySize) {
+          throw new IOException("Response body exceeds " + maxBodySize + " bytes");
+        }
+        out.write(buffer, 0, count);
+        publishProgress(total, contentLength);
+      }
+      return bytes != null ? bytes.detach() : null;
+    } finally {
+      IOUtils.returnBuf(buffer);
+      if (bytes != null) bytes.close();
+    }
+  }
+
+  /** Respuesta HTTP. Se debe cerrar para devolver el búfer del cuerpo. */
+  public static final class Response implements Closeable {
+    private final int code;
+    private final String message;
+    private final Map<String, List<String>> headers;
+    private final PooledBytes body;
+
+    Response(int code, String message, Map<String, List<String>> headers, PooledBytes body) {
+      this.code = code;
+      this.message = message;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    public int code() {
+      return code;
+    }
+
+    public String message() {
+      return message;
+    }
+
+    /** Valida si el código está entre 200 y 299. */
+    public boolean isSuccessful() {
+      return code >= 200 && code < 300;
+    }
+
+    public Map<String, List<String>> headers() {
+      return headers;
+    }
+
+    /** Primer valor de la cabecera, o {@code null}. */
+    public String header(String name) {
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+        if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+          return header.getValue().get(0);
+        }
+      }
+      return null;
+    }
+
+    /** 
+     * El cuerpo en un búfer del grupo, o {@code null} si se escribió en el
+     * sink o no había cuerpo.
+     */
+    public PooledBytes body() {
+      return body;
+    }
+
+    /** Copia el cuerpo a un arreglo nuevo. */
+    public byte[] bodyBytes() {
+      return body != null ? body.toByteArray() : new byte[0];
+    }
+
+    public String bodyString(Charset charset) {
+      return body != null ? new String(body.array(), 0, body.length(), charset) : "";
+    }
+
+    @Override public void close() {
+      if (body != null) body.close();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import juno.concurrent.Call;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+import juno.io.AsyncFiles;
+
+/**
+ * Prueba {@link AsyncFiles}, incluida la cancelación.
+ *
+ * @author jesus
+ */
+public class TestAsyncFiles {
+  
+  public static void main(String[] args) throws Exception {
+    Dispatcher.get().setExecutorDelivery(new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    });
+    File from = File.createTempFile("afs", ".bin");
+    File to = File.createTempFile("afs", ".bin");
+    try {
+      byte[] data = new byte[3 * 1024 * 1024 + 17];
+      new Random(1).nextBytes(data);
+      
+      check(await(AsyncFiles.write(from, data, false)) == null, "write");
+      check(Arrays.equals((byte[]) await(AsyncFiles.toByteArray(from)), data), "read back");
+      check(((Long) await(AsyncFiles.copy(from, to))) == data.length, "copy length");
+      check(Arrays.equals((byte[]) await(AsyncFiles.toByteArray(to)), data), "copy content");
+      
+      Call<byte[]> call = AsyncFiles.toByteArray(from);
+      check(call.cancel(true), "cancel before execute");
+      check(call.isCancelled() && call.isDone(), "state after cancel");
+      check(!call.cancel(true), "second cancel");
+      check(await(call) instanceof CancellationException, "cancellation delivered");
+      System.out.println("TestAsyncFiles OK");
+    } finally {
+      from.delete();
+      to.delete();
+    }
+  }
+  
+  /** Ejecuta la llamada y espera la respuesta o el error. */
+  @SuppressWarnings("unchecked")
+  static Object await(Call<?> call) throws InterruptedException {
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    ((Call<Object>) call).execute(new Callback<Object>() {
+      @Override public void onResponse(Object value) {
+        result.set(value);
+        done.countDown();
+      }
+      @Override public void onFailure(Exception e) {
+        result.set(e);
+        done.countDown();
+      }
+    });
+    check(done.await(10, TimeUnit.SECONDS), "callback never called");
+    return result.get();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
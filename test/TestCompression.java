@@ -0,0 +1,198 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import juno.io.Compression;
+import juno.io.IOUtils;
+
+/**
+ * Prueba {@link Compression} contra {@link GZIPInputStream} y 
+ * {@link GZIPOutputStream} del JDK.
+ *
+ * @author jesus
+ */
+public class TestCompression {
+  
+  public static void main(String[] args) throws IOException {
+    byte[] small = "hola mundo".getBytes("UTF-8");
+    byte[] big = new byte[300 * 1024];
+    Random random = new Random(3);
+    for (int i = 0; i < big.length; i++) {
+      big[i] = (byte) ('a' + random.nextInt(6));
+    }
+    
+    for (byte[] data : new byte[][] {new byte[0], small, big}) {
+      check(Arrays.equals(jdkGunzip(Compression.gzip(data)), data), "JDK reads ours");
+      check(Arrays.equals(Compression.gunzip(jdkGzip(data)), data), "we read the JDK's");
+      check(Arrays.equals(inflate(deflate(data)), data), "deflate round trip");
+    }
+    
+    testMultipleMembers(small, big);
+    testHeaderFields(small);
+    testCorrupt(small);
+    testClosed(small);
+    testWriteAfterClose(small);
+    System.out.println("TestCompression OK");
+  }
+  
+  /** Los miembros concatenados se leen todos, como en el JDK. */
+  static void testMultipleMembers(byte[] small, byte[] big) throws IOException {
+    byte[] ab = concat(Compression.gzip("ab".getBytes("UTF-8")), Compression.gzip("cd".getBytes("UTF-8")));
+    check("abcd".equals(new String(Compression.gunzip(ab), "UTF-8")), "two small members");
+    check("abcd".equals(new String(jdkGunzip(ab), "UTF-8")), "JDK reads two members");
+    
+    byte[] members = concat(jdkGzip(big), Compression.gzip(small), jdkGzip(new byte[0]), jdkGzip(big));
+    byte[] expected = concat(big, small, big);
+    check(Arrays.equals(Compression.gunzip(members), expected), "mixed members");
+    
+    // Lecturas de un byte a la vez: la cabecera siguiente llega sola.
+    InputStream in = Compression.gunzip(new OneByteInputStream(members));
+    check(Arrays.equals(IOUtils.toByteArray(in), expected), "members with one-byte reads");
+    in.close();
+  }
+  
+  /** Una cabecera con nombre, comentario y campo extra. */
+  static void testHeaderFields(byte[] data) throws IOException {
+    byte[] plain = jdkGzip(data);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(plain, 0, 3);
+    out.write(4 | 8 | 16); // FEXTRA, FNAME, FCOMMENT
+    out.write(plain, 4, 6);
+    out.write(new byte[] {3, 0, 'x', 'y', 'z'});
+    out.write("archivo.txt\0".getBytes("UTF-8"));
+    out.write("comentario\0".getBytes("UTF-8"));
+    out.write(plain, 10, plain.length - 10);
+    check(Arrays.equals(Compression.gunzip(out.toByteArray()), data), "header fields");
+  }
+  
+  static void testCorrupt(byte[] data) throws IOException {
+    byte[] gz = Compression.gzip(data);
+    byte[] badCrc = gz.clone();
+    badCrc[badCrc.length - 8] ^= 1;
+    expectZipException(badCrc, "bad CRC");
+    expectZipException(concat(gz, "basura".getBytes("UTF-8")), "trailing garbage");
+    expectZipException("no es gzip".getBytes("UTF-8"), "not gzip");
+    try {
+      Compression.gunzip(Arrays.copyOf(gz, gz.length - 3));
+      check(false, "truncated trailer");
+    } catch (EOFException expected) {
+    }
+  }
+  
+  static void testClosed(byte[] data) throws IOException {
+    InputStream in = Compression.gunzip(new ByteArrayInputStream(Compression.gzip(data)));
+    in.close();
+    try {
+      in.read();
+      check(false, "read after close");
+    } catch (IOException expected) {
+    }
+  }
+  
+  /**
+   * Escribir en un flujo cerrado no debe tocar el compresor, que ya puede
+   * estar comprimiendo otro flujo.
+   */
+  static void testWriteAfterClose(byte[] data) throws IOException {
+    for (int gzip = 0; gzip < 2; gzip++) {
+      OutputStream a = gzip == 1
+          ? Compression.gzip(new ByteArrayOutputStream())
+          : Compression.deflate(new ByteArrayOutputStream());
+      a.write(data);
+      a.close();
+      a.close();
+      
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      OutputStream b = gzip == 1 ? Compression.gzip(bytes) : Compression.deflate(bytes);
+      b.write(data);
+      expectClosed(a, 0);
+      expectClosed(a, 1);
+      expectClosed(a, 2);
+      expectClosed(a, 3);
+      b.close();
+      byte[] out = gzip == 1 ? Compression.gunzip(bytes.toByteArray()) : inflate(bytes.toByteArray());
+      check(Arrays.equals(out, data), "other stream intact after write to closed stream");
+    }
+  }
+  
+  static void expectClosed(OutputStream out, int op) {
+    try {
+      switch (op) {
+        case 0: out.write('x'); break;
+        case 1: out.write("garbage".getBytes()); break;
+        case 2: out.flush(); break;
+        default: ((DeflaterOutputStream) out).finish(); break;
+      }
+      check(false, "write after close");
+    } catch (IOException expected) {
+    }
+  }
+  
+  static void expectZipException(byte[] data, String message) throws IOException {
+    try {
+      Compression.gunzip(data);
+      check(false, message);
+    } catch (ZipException expected) {
+    }
+  }
+  
+  static byte[] jdkGzip(byte[] data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    GZIPOutputStream out = new GZIPOutputStream(bytes);
+    out.write(data);
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  static byte[] jdkGunzip(byte[] data) throws IOException {
+    return IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(data)));
+  }
+  
+  static byte[] deflate(byte[] data) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream out = Compression.deflate(bytes);
+    out.write(data);
+    out.close();
+    return bytes.toByteArray();
+  }
+  
+  static byte[] inflate(byte[] data) throws IOException {
+    InputStream in = Compression.inflate(new ByteArrayInputStream(data));
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+  
+  static byte[] concat(byte[]... arrays) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] array : arrays) {
+      out.write(array, 0, array.length);
+    }
+    return out.toByteArray();
+  }
+  
+  static final class OneByteInputStream extends ByteArrayInputStream {
+    OneByteInputStream(byte[] buf) {
+      super(buf);
+    }
+    
+    @Override public synchronized int read(byte[] b, int off, int len) {
+      return super.read(b, off, Math.min(len, 1));
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
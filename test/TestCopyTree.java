@@ -0,0 +1,79 @@
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import juno.io.Files;
+
+/**
+ * Prueba {@link Files#copyTree(File, File, FileFilter, int)}.
+ *
+ * @author jesus
+ */
+public class TestCopyTree {
+  
+  public static void main(String[] args) throws IOException {
+    File base = File.createTempFile("tree", "");
+    base.delete();
+    File from = new File(base, "tree");
+    File to = new File(base, "copy");
+    try {
+      mkdirs(new File(from, "a/empty"));
+      mkdirs(new File(from, "a/b/c"));
+      mkdirs(new File(from, "skip/inner"));
+      for (int i = 0; i < 600; i++) {
+        Files.write(new File(from, "a/b/f" + i + ".txt"), "archivo " + i, false);
+      }
+      Files.write(new File(from, "top.txt"), "root", false);
+      Files.write(new File(from, "a/b/c/deep.txt"), "profundo", false);
+      Files.write(new File(from, "skip/inner/x.txt"), "x", false);
+      
+      int copied = Files.copyTree(from, to, new FileFilter() {
+        @Override public boolean accept(File file) {
+          return !file.getName().equals("skip");
+        }
+      }, 4);
+      
+      check(copied == 602, "copied=" + copied);
+      check(new File(to, "a/empty").isDirectory(), "empty directory not copied");
+      check(new File(to, "a/b/c").isDirectory(), "nested directory");
+      check(!new File(to, "skip").exists(), "filtered directory copied");
+      check("root".equals(Files.toString(new File(to, "top.txt"))), "top.txt");
+      check("profundo".equals(Files.toString(new File(to, "a/b/c/deep.txt"))), "deep.txt");
+      check("archivo 599".equals(Files.toString(new File(to, "a/b/f599.txt"))), "f599.txt");
+      
+      // Copiar dentro del propio árbol no debe crear directorios sin fin.
+      for (File inside : new File[] {from, new File(from, "backup"), new File(from, "a/../a/b/backup")}) {
+        try {
+          Files.copyTree(from, inside, null, 2);
+          check(false, "copied into itself: " + inside);
+        } catch (IOException expected) {
+        }
+      }
+      check(!new File(from, "backup").exists(), "backup created");
+      check(!new File(from, "a/b/backup").exists(), "nested backup created");
+      // Un hermano cuyo nombre empieza igual no está dentro del árbol.
+      check(Files.copyTree(new File(from, "a/b/c"), new File(from, "a/b/c2"), null, 2) == 1, "sibling");
+      System.out.println("TestCopyTree OK");
+    } finally {
+      delete(base);
+    }
+  }
+  
+  static void mkdirs(File dir) throws IOException {
+    if (!dir.mkdirs()) throw new IOException("Cannot create " + dir);
+  }
+  
+  static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
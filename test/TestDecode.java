@@ -0,0 +1,75 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import juno.io.IOUtils;
+
+/**
+ * Prueba la decodificación de {@link IOUtils#toString(InputStream, Charset)}
+ * y {@link IOUtils#toCharArray(InputStream, Charset)} contra 
+ * {@code new String(bytes, charset)}.
+ *
+ * @author jesus
+ */
+public class TestDecode {
+  
+  public static void main(String[] args) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      text.append(i % 7 == 0 ? "año " : "abc ").append(i);
+      if (i % 1000 == 0) text.append("\u20ac\ud83d\ude00"); // € y un emoji
+    }
+    String ascii = "plain ascii text, 0123456789\n";
+    
+    for (String name : new String[] {"UTF-8", "US-ASCII", "ISO-8859-1", "UTF-16"}) {
+      Charset charset = Charset.forName(name);
+      roundTrip(ascii, charset);
+      roundTrip(text.toString(), charset);
+      roundTrip("", charset);
+    }
+    
+    // Bytes inválidos se reemplazan igual que en String.
+    byte[] invalid = {'a', (byte) 0xC3, 'b', (byte) 0xFF, 'c', (byte) 0xE2, (byte) 0x82};
+    checkDecodes(invalid, Charset.forName("UTF-8"));
+    byte[] high = {'a', (byte) 0x80, (byte) 0xFF, 'z'};
+    checkDecodes(high, Charset.forName("US-ASCII"));
+    checkDecodes(high, Charset.forName("ISO-8859-1"));
+    System.out.println("TestDecode OK");
+  }
+  
+  static void roundTrip(String text, Charset charset) throws IOException {
+    checkDecodes(text.getBytes(charset), charset);
+  }
+  
+  static void checkDecodes(byte[] bytes, Charset charset) throws IOException {
+    String expected = new String(bytes, charset);
+    check(expected.equals(IOUtils.toString(new ByteArrayInputStream(bytes), charset)),
+            charset + ": toString, " + bytes.length + " bytes");
+    check(Arrays.equals(expected.toCharArray(), 
+            IOUtils.toCharArray(new ByteArrayInputStream(bytes), charset)),
+            charset + ": toCharArray, " + bytes.length + " bytes");
+    check(expected.equals(IOUtils.toString(new SlowInputStream(bytes), charset)),
+            charset + ": toString with short reads, " + bytes.length + " bytes");
+  }
+  
+  /** Devuelve como mucho 7 bytes por lectura, partiendo los caracteres. */
+  static final class SlowInputStream extends ByteArrayInputStream {
+    SlowInputStream(byte[] buf) {
+      super(buf);
+    }
+    
+    @Override public synchronized int read(byte[] b, int off, int len) {
+      return super.read(b, off, Math.min(len, 7));
+    }
+    
+    @Override public synchronized int available() {
+      return 0;
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
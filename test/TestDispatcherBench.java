@@ -0,0 +1,69 @@
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import juno.concurrent.AsyncCall;
+import juno.concurrent.Dispatcher;
+
+/**
+ * Mide cuántas llamadas por segundo aceptan {@link Dispatcher#execute} al
+ * aumentar el número de hilos que envían llamadas a la vez.
+ *
+ * @author jesus
+ */
+public class TestDispatcherBench {
+  
+  static final int CALLS_PER_PRODUCER = 50000;
+  
+  public static void main(String[] args) throws Exception {
+    int workers = Runtime.getRuntime().availableProcessors();
+    
+    // Calentamiento.
+    run(4, workers);
+    
+    System.out.println("producers  calls/s");
+    for (int producers = 1; producers <= 64; producers *= 2) {
+      double rate = run(producers, workers);
+      System.out.printf("%9d  %,.0f\n", producers, rate);
+    }
+  }
+  
+  static double run(final int producers, int workers) throws Exception {
+    final Dispatcher dispatcher = Dispatcher.adaptive(workers, workers);
+    dispatcher.setExecutorDelivery(new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    });
+    
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(producers);
+    for (int i = 0; i < producers; i++) {
+      new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+            for (int j = 0; j < CALLS_PER_PRODUCER; j++) {
+              new AsyncCall<Object>(dispatcher) {
+                @Override public Object doInBackground() {
+                  return null;
+                }
+              }.execute();
+            }
+          } catch (InterruptedException ignore) {
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    
+    long begin = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - begin;
+    
+    dispatcher.shutdown(1, TimeUnit.MINUTES);
+    return producers * (double) CALLS_PER_PRODUCER / elapsed * 1e9;
+  }
+}
@@ -0,0 +1,115 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import juno.io.FileCache;
+import juno.io.Files;
+
+/**
+ * Prueba {@link FileCache}: frescura, invalidación y límite de tamaño.
+ *
+ * @author jesus
+ */
+public class TestFileCache {
+  
+  static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  public static void main(String[] args) throws IOException {
+    File a = File.createTempFile("fca", ".txt");
+    File b = File.createTempFile("fcb", ".txt");
+    try {
+      testFreshness(a);
+      testInvalidate(a);
+      testLimit(a, b);
+      testDecodedWeight(a, b);
+      System.out.println("TestFileCache OK");
+    } finally {
+      a.delete();
+      b.delete();
+    }
+  }
+  
+  /** Un cambio de tamaño o de fecha vuelve a leer el archivo. */
+  static void testFreshness(File file) throws IOException {
+    FileCache cache = new FileCache(1024);
+    Files.write(file, "uno", false);
+    check("uno".equals(cache.toString(file, UTF8)), "first read");
+    
+    Files.write(file, "dos!", false);
+    check("dos!".equals(cache.toString(file, UTF8)), "length changed");
+    
+    Files.write(file, "tres", false);
+    file.setLastModified(file.lastModified() + 2000);
+    check("tres".equals(cache.toString(file, UTF8)), "date changed");
+    check(cache.size() == 4 + 2 * 4, "size=" + cache.size());
+  }
+  
+  /** invalidate() descarta la entrada aunque el archivo no cambie. */
+  static void testInvalidate(File file) throws IOException {
+    FileCache cache = new FileCache(1024);
+    Files.write(file, "abcd", false);
+    long lastModified = file.lastModified();
+    byte[] first = cache.toByteArray(file);
+    first[0] = 'z';
+    check(cache.toByteArray(file)[0] == 'a', "toByteArray returns a copy");
+    
+    // Mismo tamaño y fecha: la caché no lo notaría sin invalidate().
+    Files.write(file, "wxyz", false);
+    file.setLastModified(lastModified);
+    check(cache.toByteArray(file)[0] == 'a', "stale entry kept");
+    cache.invalidate(file);
+    check(cache.size() == 0, "size after invalidate=" + cache.size());
+    check(cache.toByteArray(file)[0] == 'w', "reloaded after invalidate");
+    cache.clear();
+    check(cache.size() == 0, "size after clear=" + cache.size());
+  }
+  
+  /** Se descarta el archivo usado hace más tiempo. */
+  static void testLimit(File a, File b) throws IOException {
+    FileCache cache = new FileCache(100);
+    Files.write(a, repeat('a', 60), false);
+    Files.write(b, repeat('b', 60), false);
+    cache.toByteArray(a);
+    cache.toByteArray(b);
+    check(cache.size() == 60, "size=" + cache.size());
+    
+    File big = File.createTempFile("fcc", ".txt");
+    try {
+      Files.write(big, repeat('c', 200), false);
+      check(cache.toByteArray(big).length == 200, "larger than the limit is still read");
+      check(cache.size() == 60, "larger than the limit is not kept");
+    } finally {
+      big.delete();
+    }
+  }
+  
+  /** El texto decodificado cuenta en el límite. */
+  static void testDecodedWeight(File a, File b) throws IOException {
+    FileCache cache = new FileCache(200);
+    Files.write(a, repeat('a', 50), false);
+    Files.write(b, repeat('b', 50), false);
+    cache.toByteArray(a);
+    cache.toByteArray(b);
+    check(cache.size() == 100, "size=" + cache.size());
+    
+    cache.toString(b, UTF8);
+    check(cache.size() == 200, "size with text=" + cache.size());
+    cache.toString(a, UTF8);
+    // a con su texto pesa 150; b se descarta.
+    check(cache.size() == 150, "size after eviction=" + cache.size());
+    cache.toString(a, Charset.forName("ISO-8859-1"));
+    check(cache.size() == 150, "text replaced, size=" + cache.size());
+  }
+  
+  static String repeat(char c, int n) {
+    StringBuilder sb = new StringBuilder(n);
+    for (int i = 0; i < n; i++) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
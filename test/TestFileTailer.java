@@ -0,0 +1,95 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+import juno.io.FileTailer;
+import juno.io.Files;
+
+/**
+ * Prueba {@link FileTailer}: líneas parciales, truncado y rotación.
+ *
+ * @author jesus
+ */
+public class TestFileTailer {
+  
+  static final List<String> lines = new ArrayList<String>();
+  
+  public static void main(String[] args) throws IOException {
+    Dispatcher.get().setExecutorDelivery(new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    });
+    File file = File.createTempFile("tail", ".log");
+    File rotated = new File(file.getPath() + ".1");
+    FileTailer tailer = new FileTailer(file, Charset.forName("UTF-8"), new Callback<String>() {
+      @Override public void onResponse(String line) {
+        lines.add(line);
+      }
+      @Override public void onFailure(Exception e) {
+        throw new AssertionError(e);
+      }
+    });
+    try {
+      Files.write(file, "a\r\nb\npar", true);
+      check(tailer.poll() == 2, "complete lines only");
+      Files.write(file, "tial\nx", true);
+      check(tailer.poll() == 1, "partial line joined");
+      check(tailer.offset() == file.length(), "offset=" + tailer.offset());
+      expect("a", "b", "partial");
+      
+      // Truncado: la línea parcial "x" se descarta.
+      Files.write(file, "y\n", false);
+      check(tailer.poll() == 1, "after truncation");
+      expect("y");
+      
+      // Rotación: lo escrito antes de renombrar se lee del archivo anterior,
+      // y la línea sin terminar se entrega al cerrarlo.
+      Files.write(file, "old\nlast", true);
+      check(file.renameTo(rotated), "rename");
+      Files.write(file, "new\n", false);
+      check(tailer.poll() == 3, "rotation");
+      expect("old", "last", "new");
+      
+      // El archivo desaparece y vuelve a aparecer.
+      check(file.delete(), "delete");
+      check(tailer.poll() == 0, "missing file");
+      Files.write(file, "again\n", false);
+      check(tailer.poll() == 1, "file recreated");
+      expect("again");
+      
+      FileTailer end = new FileTailer(file, new Callback<String>() {
+        @Override public void onResponse(String line) {
+          lines.add(line);
+        }
+        @Override public void onFailure(Exception e) {
+        }
+      });
+      end.skipToEnd();
+      Files.write(file, "after\n", true);
+      check(end.poll() == 1, "skipToEnd");
+      expect("after");
+      end.close();
+      System.out.println("TestFileTailer OK");
+    } finally {
+      tailer.close();
+      file.delete();
+      rotated.delete();
+    }
+  }
+  
+  static void expect(String... expected) {
+    check(lines.equals(Arrays.asList(expected)), "lines=" + lines);
+    lines.clear();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
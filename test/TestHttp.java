@@ -0,0 +1,207 @@
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+import juno.io.IOUtils;
+import juno.net.HttpCall;
+
+/**
+ * Prueba {@link HttpCall} contra un servidor HTTP local.
+ *
+ * @author jesus
+ */
+public class TestHttp {
+  
+  static final Charset UTF8 = Charset.forName("UTF-8");
+  static final byte[] BIG = new byte[1024 * 1024];
+  
+  static HttpServer server;
+  static Dispatcher dispatcher;
+  static String base;
+  
+  /** Puertos de los clientes, para comprobar que se reutiliza la conexión. */
+  static final Set<Integer> clientPorts = new HashSet<Integer>();
+  
+  public static void main(String[] args) throws Exception {
+    startServer();
+    dispatcher = new Dispatcher();
+    dispatcher.setExecutorDelivery(new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    });
+    try {
+      testGet();
+      testKeepAlive();
+      testLargeBody();
+      testSink();
+      testPost();
+      testErrorBody();
+      testContentLengthLimit();
+      testStreamingLimit();
+      System.out.println("TestHttp OK");
+    } finally {
+      dispatcher.shutdown(5, TimeUnit.SECONDS);
+      server.stop(0);
+    }
+  }
+  
+  static void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    new java.util.Random(7).nextBytes(BIG);
+    server.createContext("/hello", new HttpHandler() {
+      @Override public void handle(HttpExchange ex) throws IOException {
+        synchronized (clientPorts) {
+          clientPorts.add(ex.getRemoteAddress().getPort());
+        }
+        send(ex, 200, "hola mundo".getBytes(UTF8), true);
+      }
+    });
+    server.createContext("/big", new HttpHandler() {
+      @Override public void handle(HttpExchange ex) throws IOException {
+        send(ex, 200, BIG, true);
+      }
+    });
+    server.createContext("/chunked", new HttpHandler() {
+      @Override public void handle(HttpExchange ex) throws IOException {
+        send(ex, 200, BIG, false);
+      }
+    });
+    server.createContext("/echo", new HttpHandler() {
+      @Override public void handle(HttpExchange ex) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        IOUtils.copy(ex.getRequestBody(), body);
+        send(ex, 200, body.toByteArray(), true);
+      }
+    });
+    server.createContext("/missing", new HttpHandler() {
+      @Override public void handle(HttpExchange ex) throws IOException {
+        send(ex, 404, "no existe".getBytes(UTF8), true);
+      }
+    });
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+  
+  static void send(HttpExchange ex, int code, byte[] body, boolean fixedLength) throws IOException {
+    ex.sendResponseHeaders(code, fixedLength ? body.length : 0);
+    OutputStream out = ex.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+  
+  static HttpCall.Response fetch(HttpCall call) throws Exception {
+    final CountDownLatch done = new CountDownLatch(1);
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    call.execute(new Callback<HttpCall.Response>() {
+      @Override public void onResponse(HttpCall.Response response) {
+        result.set(response);
+        done.countDown();
+      }
+      @Override public void onFailure(Exception e) {
+        result.set(e);
+        done.countDown();
+      }
+    });
+    check(done.await(10, TimeUnit.SECONDS), "timeout");
+    if (result.get() instanceof Exception) throw (Exception) result.get();
+    return (HttpCall.Response) result.get();
+  }
+  
+  static HttpCall call(String path) throws IOException {
+    return new HttpCall(new URL(base + path), dispatcher);
+  }
+  
+  static void testGet() throws Exception {
+    HttpCall.Response response = fetch(call("/hello"));
+    try {
+      check(response.code() == 200, "code " + response.code());
+      check("hola mundo".equals(response.bodyString(UTF8)), "body");
+    } finally {
+      response.close();
+    }
+  }
+  
+  static void testKeepAlive() throws Exception {
+    synchronized (clientPorts) {
+      clientPorts.clear();
+    }
+    for (int i = 0; i < 3; i++) {
+      fetch(call("/hello")).close();
+    }
+    synchronized (clientPorts) {
+      check(clientPorts.size() == 1, "connections " + clientPorts);
+    }
+  }
+  
+  static void testLargeBody() throws Exception {
+    HttpCall.Response response = fetch(call("/chunked"));
+    try {
+      check(Arrays.equals(BIG, response.bodyBytes()), "large body");
+    } finally {
+      response.close();
+    }
+  }
+  
+  static void testSink() throws Exception {
+    ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    HttpCall.Response response = fetch(call("/big").setSink(sink));
+    check(response.body() == null, "body with sink");
+    check(Arrays.equals(BIG, sink.toByteArray()), "sink content");
+  }
+  
+  static void testPost() throws Exception {
+    byte[] payload = "datos del post".getBytes(UTF8);
+    HttpCall.Response response = fetch(call("/echo").setMethod("POST").setBody(payload));
+    try {
+      check(Arrays.equals(payload, response.bodyBytes()), "echo");
+    } finally {
+      response.close();
+    }
+  }
+  
+  static void testErrorBody() throws Exception {
+    HttpCall.Response response = fetch(call("/missing"));
+    try {
+      check(response.code() == 404 && !response.isSuccessful(), "code " + response.code());
+      check("no existe".equals(response.bodyString(UTF8)), "error body");
+    } finally {
+      response.close();
+    }
+  }
+  
+  static void testContentLengthLimit() throws Exception {
+    try {
+      fetch(call("/big").setMaxBodySize(1024));
+      check(false, "limit not enforced");
+    } catch (IOException expected) {
+    }
+  }
+  
+  static void testStreamingLimit() throws Exception {
+    try {
+      fetch(call("/chunked").setMaxBodySize(1024));
+      check(false, "streaming limit not enforced");
+    } catch (IOException expected) {
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
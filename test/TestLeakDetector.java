@@ -0,0 +1,77 @@
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import juno.io.ByteArrayPool;
+import juno.io.LeakDetector;
+import juno.io.PooledBytes;
+import juno.io.PoolingByteArrayOutputStream;
+
+/**
+ * Prueba que {@link LeakDetector} reporta los flujos sin cerrar y sólo ésos.
+ *
+ * @author jesus
+ */
+public class TestLeakDetector {
+  
+  static final AtomicInteger leaks = new AtomicInteger();
+  
+  public static void main(String[] args) throws Exception {
+    Logger logger = Logger.getLogger(LeakDetector.class.getName());
+    logger.setUseParentHandlers(false);
+    logger.addHandler(new Handler() {
+      @Override public void publish(LogRecord record) {
+        if (record.getThrown() != null) leaks.incrementAndGet();
+      }
+      @Override public void flush() {
+      }
+      @Override public void close() {
+      }
+    });
+    LeakDetector.setSampleInterval(1);
+    ByteArrayPool pool = new ByteArrayPool(1024 * 1024);
+    
+    leak(pool, 3);
+    check(collect(pool) == 3, "leaks=" + leaks.get());
+    
+    // Cerrado dos veces, y separado sin cerrar el flujo vacío.
+    PoolingByteArrayOutputStream closed = new PoolingByteArrayOutputStream(pool);
+    closed.close();
+    closed.close();
+    detached(pool).close();
+    check(collect(pool) == 3, "false leak report: " + leaks.get());
+    
+    // Un búfer separado que nadie cierra sí es una fuga.
+    detached(pool);
+    check(collect(pool) == 4, "PooledBytes leak not reported: " + leaks.get());
+    System.out.println("TestLeakDetector OK");
+  }
+  
+  static void leak(ByteArrayPool pool, int n) {
+    for (int i = 0; i < n; i++) {
+      new PoolingByteArrayOutputStream(pool).write(1);
+    }
+  }
+  
+  static PooledBytes detached(ByteArrayPool pool) throws IOException {
+    PoolingByteArrayOutputStream out = new PoolingByteArrayOutputStream(pool);
+    out.write(new byte[] {1, 2, 3});
+    return out.detach();
+  }
+  
+  /** Fuerza la recolección; las fugas se reportan al seguir otro objeto. */
+  static int collect(ByteArrayPool pool) throws Exception {
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(50);
+      new PoolingByteArrayOutputStream(pool).close();
+    }
+    return leaks.get();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
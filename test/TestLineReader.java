@@ -0,0 +1,97 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import juno.io.IOUtils;
+import juno.io.LineReader;
+
+/**
+ * Prueba {@link LineReader} con entradas que ocupan muchos búferes.
+ *
+ * @author jesus
+ */
+public class TestLineReader {
+  
+  static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  public static void main(String[] args) throws IOException {
+    // Con un búfer del grupo de casi cuatro veces el de caracteres: la 
+    // clase siguiente a la de 8 KiB admite hasta 32767 bytes.
+    IOUtils.returnBuf(new byte[32767]);
+    testLines(32767);
+    testLines(8192);
+    testSmallReads();
+    testRecords();
+    testLastLine();
+    System.out.println("TestLineReader OK");
+  }
+  
+  /** Lee 20000 líneas con caracteres de varios bytes. */
+  static void testLines(int pooled) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      text.append("línea ").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+    }
+    LineReader reader = new LineReader(
+            new ByteArrayInputStream(text.toString().getBytes(UTF8)), UTF8);
+    try {
+      int count = 0;
+      String line;
+      while ((line = reader.nextString()) != null) {
+        check(line.equals("línea " + count), "line " + count + ": " + line);
+        count++;
+      }
+      check(count == 20000, "pooled=" + pooled + ", lines=" + count);
+    } finally {
+      reader.close();
+    }
+  }
+  
+  /** Un flujo que devuelve un byte por lectura parte los caracteres. */
+  static void testSmallReads() throws IOException {
+    final byte[] data = "ñandú\nδέλτα\n".getBytes(UTF8);
+    InputStream in = new InputStream() {
+      int pos;
+      @Override public int read() {
+        return pos < data.length ? data[pos++] & 0xff : -1;
+      }
+      @Override public int read(byte[] b, int off, int len) {
+        if (pos == data.length) return -1;
+        if (len == 0) return 0;
+        b[off] = data[pos++];
+        return 1;
+      }
+    };
+    LineReader reader = new LineReader(in, UTF8);
+    check("ñandú".equals(reader.nextString()), "first line");
+    check("δέλτα".equals(reader.nextString()), "second line");
+    check(reader.next() == null, "end");
+    reader.close();
+  }
+  
+  static void testRecords() throws IOException {
+    LineReader reader = new LineReader(
+            new ByteArrayInputStream("a||b||||c".getBytes(UTF8)), UTF8, "||");
+    check("a".equals(reader.nextString()), "a");
+    check("b".equals(reader.nextString()), "b");
+    check("".equals(reader.nextString()), "empty");
+    check("c".equals(reader.nextString()), "c");
+    check(reader.next() == null, "end");
+    reader.close();
+  }
+  
+  /** La última línea sin salto de línea también se entrega. */
+  static void testLastLine() throws IOException {
+    LineReader reader = new LineReader(
+            new ByteArrayInputStream("uno\ndos".getBytes(UTF8)), UTF8);
+    check("uno".equals(reader.nextString()), "uno");
+    check("dos".equals(reader.nextString()), "dos");
+    check(reader.next() == null, "end");
+    reader.close();
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
@@ -0,0 +1,78 @@
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import juno.io.Files;
+import juno.io.MappedFile;
+
+/**
+ * Prueba {@link MappedFile} y {@link Files#map(File)} con ventanas pequeñas.
+ *
+ * @author jesus
+ */
+public class TestMappedFile {
+  
+  public static void main(String[] args) throws IOException {
+    File file = File.createTempFile("map", ".bin");
+    try {
+      byte[] data = new byte[10000];
+      for (int i = 0; i < data.length; i++) {
+        data[i] = (byte) ('a' + i % 26);
+      }
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(data);
+      out.close();
+      
+      testWindows(file, data);
+      testMap(file, data);
+      System.out.println("TestMappedFile OK");
+    } finally {
+      file.delete();
+    }
+  }
+  
+  static void testWindows(File file, byte[] data) throws IOException {
+    MappedFile mapped = new MappedFile(file, 4096);
+    try {
+      check(mapped.size() == data.length, "size=" + mapped.size());
+      check(mapped.windowCount() == 3, "windows=" + mapped.windowCount());
+      check(mapped.window(2).remaining() == data.length - 8192, "last window");
+      for (int i = 0; i < data.length; i += 777) {
+        check(mapped.get(i) == data[i], "byte " + i);
+      }
+      
+      // Dentro de una ventana y cruzando el borde entre dos.
+      checkSlice(mapped.slice(100, 200), data, 100);
+      checkSlice(mapped.slice(4000, 300), data, 4000);
+      check(mapped.asCharSequence(4090, 12).toString()
+              .equals(new String(data, 4090, 12, "ISO-8859-1")), "text across windows");
+      
+      try {
+        mapped.get(data.length);
+        check(false, "read past the end");
+      } catch (IndexOutOfBoundsException expected) {
+      }
+    } finally {
+      mapped.close();
+    }
+  }
+  
+  static void testMap(File file, byte[] data) throws IOException {
+    MappedByteBuffer buf = Files.map(file);
+    check(buf.remaining() == data.length, "remaining=" + buf.remaining());
+    checkSlice(buf, data, 0);
+    checkSlice(Files.map(file, 5000, 10), data, 5000);
+  }
+  
+  static void checkSlice(ByteBuffer buf, byte[] data, int offset) {
+    for (int i = 0; buf.hasRemaining(); i++) {
+      check(buf.get() == data[offset + i], "byte " + (offset + i));
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
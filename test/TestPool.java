@@ -0,0 +1,241 @@
+
+import juno.io.ByteArrayPool;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import juno.io.CachingByteArrayPool;
+import juno.io.DirectByteBufferPool;
+
+/**
+ * Prueba los grupos de búferes.
+ *
+ * @author jesus
+ */
+public class TestPool {
+  
+  public static void main(String[] args) throws Exception {
+    testSizeClasses();
+    testLimit();
+    testNegativeLength();
+    testAdaptiveLimit();
+    testMagazineSizeClasses();
+    testMagazineAccounting();
+    testMagazineRefill();
+    testDeadThreadMagazine();
+    testThreadChurn();
+    testDirectPool();
+    System.out.println("TestPool OK");
+  }
+  
+  /** Un pedido sólo recibe búferes de su clase de tamaño o de la siguiente. */
+  static void testSizeClasses() {
+    ByteArrayPool pool = new ByteArrayPool(4 * 1024 * 1024);
+    byte[] small = pool.getBuf(100);
+    check(small.length == 128, "rounded up to class: " + small.length);
+    
+    pool.returnBuf(new byte[1024 * 1024]);
+    byte[] buf = pool.getBuf(8192);
+    check(buf.length == 8192, "8 KiB request got " + buf.length);
+    check(pool.getMissCount() == 2, "misses=" + pool.getMissCount());
+    
+    pool.returnBuf(buf);
+    check(pool.getBuf(5000) == buf, "next class reused");
+    check(pool.getBuf(600 * 1024).length == 1024 * 1024, "1 MiB reused for 600 KiB");
+    check(pool.getHitCount() == 2, "hits=" + pool.getHitCount());
+    check(pool.getSize() == 0, "size=" + pool.getSize());
+  }
+  
+  /** Los búferes más antiguos se descartan al pasar el límite. */
+  static void testLimit() {
+    ByteArrayPool pool = new ByteArrayPool(16 * 1024);
+    byte[] first = new byte[8192];
+    pool.returnBuf(first);
+    pool.returnBuf(new byte[8192]);
+    pool.returnBuf(new byte[4096]);
+    check(pool.getSize() == 12 * 1024, "size=" + pool.getSize());
+    check(pool.getEvictionCount() == 1, "evictions=" + pool.getEvictionCount());
+    check(pool.getBuf(8192) != first, "oldest evicted");
+    
+    pool.returnBuf(new byte[32 * 1024]);
+    check(pool.getRejectedCount() == 1, "rejected=" + pool.getRejectedCount());
+  }
+  
+  /** El límite crece con los rechazos y vuelve a bajar sin actividad. */
+  static void testAdaptiveLimit() throws Exception {
+    ByteArrayPool pool = new ByteArrayPool(16 * 1024, 1024 * 1024);
+    pool.setDecayInterval(50, TimeUnit.MILLISECONDS);
+    pool.returnBuf(new byte[256 * 1024]);
+    check(pool.getSizeLimit() == 512 * 1024, "limit=" + pool.getSizeLimit());
+    check(pool.getSize() == 256 * 1024, "size=" + pool.getSize());
+    
+    Thread.sleep(100);
+    pool.returnBuf(new byte[1024]);
+    check(pool.getSizeLimit() == 256 * 1024, "limit=" + pool.getSizeLimit());
+    for (int i = 0; i < 5; i++) {
+      Thread.sleep(100);
+      pool.returnBuf(new byte[1024]);
+    }
+    check(pool.getSizeLimit() == 16 * 1024, "limit=" + pool.getSizeLimit());
+    check(pool.getSize() <= 16 * 1024, "size=" + pool.getSize());
+  }
+  
+  static void testNegativeLength() {
+    try {
+      new ByteArrayPool(4096).getBuf(-1);
+      check(false, "negative length accepted");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+  
+  /** El cargador por hilo aplica la misma regla de clases que el grupo. */
+  static void testMagazineSizeClasses() {
+    CachingByteArrayPool pool = new CachingByteArrayPool(4 * 1024 * 1024);
+    pool.returnBuf(new byte[1024 * 1024]);
+    pool.returnBuf(new byte[1024 * 1024]);
+    byte[] buf = pool.getBuf(8192);
+    check(buf.length == 8192, "8 KiB request got " + buf.length);
+    
+    byte[] big = new byte[32 * 1024];
+    pool.returnBuf(big);
+    check(pool.getBuf(4096) != big, "4 KiB request got a 32 KiB buffer");
+    check(pool.getBuf(20000) == big, "32 KiB buffer reused for 20000 bytes");
+  }
+  
+  /** Los bytes de los cargadores cuentan en el tamaño y tienen tope. */
+  static void testMagazineAccounting() {
+    CachingByteArrayPool pool = new CachingByteArrayPool(4 * 1024 * 1024, 4);
+    for (int i = 0; i < 16; i++) {
+      pool.returnBuf(new byte[32 * 1024]);
+    }
+    check(pool.getSize() == 16 * 32 * 1024, "size=" + pool.getSize());
+    for (int i = 0; i < 16; i++) {
+      pool.getBuf(32 * 1024);
+    }
+    check(pool.getSize() == 0, "size=" + pool.getSize());
+    check(pool.getHitCount() == 16, "hits=" + pool.getHitCount());
+    check(pool.getMissCount() == 0, "misses=" + pool.getMissCount());
+    
+    CachingByteArrayPool small = new CachingByteArrayPool(64 * 1024, 4);
+    for (int i = 0; i < 8; i++) {
+      small.returnBuf(new byte[16 * 1024]);
+    }
+    check(small.getSize() <= 64 * 1024, "over limit: " + small.getSize());
+  }
+  
+  /** Al vaciarse, el cargador se rellena con varios búferes a la vez. */
+  static void testMagazineRefill() throws Exception {
+    final CachingByteArrayPool pool = new CachingByteArrayPool(4 * 1024 * 1024, 4);
+    Thread other = new Thread() {
+      @Override public void run() {
+        for (int i = 0; i < 4; i++) {
+          pool.returnBuf(new byte[8192]);
+        }
+        byte[] a = pool.getBuf(8192);
+        for (int i = 0; i < 5; i++) {
+          pool.returnBuf(new byte[8192]);
+        }
+        pool.returnBuf(a);
+      }
+    };
+    other.start();
+    other.join();
+    long hits = pool.getHitCount();
+    pool.getBuf(8192);
+    pool.getBuf(8192);
+    check(pool.getHitCount() == hits + 2, "refill hits=" + (pool.getHitCount() - hits));
+    check(pool.getMissCount() == 0, "misses=" + pool.getMissCount());
+  }
+  
+  /** El cargador de un hilo terminado vuelve al grupo compartido. */
+  static void testDeadThreadMagazine() throws Exception {
+    final CachingByteArrayPool pool = new CachingByteArrayPool(4 * 1024 * 1024, 2);
+    Thread other = new Thread() {
+      @Override public void run() {
+        pool.returnBuf(new byte[4096]);
+        pool.returnBuf(new byte[4096]);
+      }
+    };
+    other.start();
+    other.join();
+    int size = pool.getSize();
+    check(size == 8192, "size=" + size);
+    // Llenar el cargador de este hilo provoca un vaciado que recupera el otro.
+    for (int i = 0; i < 3; i++) {
+      pool.returnBuf(new byte[1024]);
+    }
+    check(pool.getSize() == size + 3 * 1024, "size=" + pool.getSize());
+    long misses = pool.getMissCount();
+    pool.getBuf(1024);
+    pool.getBuf(4096);
+    pool.getBuf(4096);
+    check(pool.getMissCount() == misses, "dead magazine not reclaimed");
+  }
+  
+  /**
+   * Con muchos hilos cortos, que nunca vacían su cargador, los cargadores de
+   * los hilos terminados no se acumulan en el tamaño del grupo.
+   */
+  static void testThreadChurn() throws Exception {
+    final CachingByteArrayPool small = new CachingByteArrayPool(64 * 1024, 4);
+    for (int i = 0; i < 2000; i++) {
+      Thread t = new Thread() {
+        @Override public void run() {
+          small.returnBuf(small.getBuf(1024));
+        }
+      };
+      t.start();
+      t.join();
+    }
+    check(small.getSize() <= 64 * 1024, "dead magazines counted: " + small.getSize());
+    
+    final CachingByteArrayPool pool = new CachingByteArrayPool(256 * 1024, 4);
+    for (int i = 0; i < 200; i++) {
+      Thread t = new Thread() {
+        @Override public void run() {
+          pool.returnBuf(new byte[16 * 1024]);
+          pool.returnBuf(new byte[16 * 1024]);
+        }
+      };
+      t.start();
+      t.join();
+    }
+    check(pool.getSize() <= 256 * 1024, "dead magazines counted: " + pool.getSize());
+    pool.returnBuf(new byte[64 * 1024]);
+    long hits = pool.getHitCount();
+    pool.getBuf(64 * 1024);
+    check(pool.getHitCount() == hits + 1, "shared buffer evicted");
+  }
+  
+  /** Los búferes directos se cortan de bloques y se reutilizan. */
+  static void testDirectPool() {
+    DirectByteBufferPool pool = new DirectByteBufferPool(2 * 64 * 1024, 64 * 1024);
+    ByteBuffer a = pool.getBuffer(5000);
+    check(a.isDirect() && a.capacity() == 8192, "capacity=" + a.capacity());
+    check(pool.getAllocated() == 64 * 1024, "allocated=" + pool.getAllocated());
+    ByteBuffer b = pool.getBuffer(8192);
+    check(b != a && pool.getAllocated() == 64 * 1024, "same slab");
+    
+    a.put((byte) 1);
+    pool.release(a);
+    pool.release(a);
+    ByteBuffer c = pool.getBuffer(6000);
+    check(c == a && c.position() == 0, "released buffer reused and cleared");
+    check(pool.getBuffer(6000) != a, "double release handed out twice");
+    
+    // Cada clase corta su propio bloque; el segundo agota el límite.
+    pool.getBuffer(4096);
+    check(pool.getAllocated() == 2 * 64 * 1024, "allocated=" + pool.getAllocated());
+    ByteBuffer unpooled = pool.getBuffer(16 * 1024);
+    check(unpooled.isDirect() && pool.getAllocated() == 2 * 64 * 1024, "limit exceeded");
+    pool.release(unpooled);
+    
+    try {
+      pool.getBuffer(-1);
+      check(false, "negative length accepted");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
@@ -0,0 +1,100 @@
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import juno.concurrent.Callback;
+import juno.concurrent.Dispatcher;
+import juno.io.Files;
+
+/**
+ * Prueba {@link Files#readAll(java.util.Collection, int)} y su variante con
+ * {@link Callback}.
+ *
+ * @author jesus
+ */
+public class TestReadAll {
+  
+  public static void main(String[] args) throws Exception {
+    List<File> files = new ArrayList<File>();
+    try {
+      for (int i = 0; i < 300; i++) {
+        File file = File.createTempFile("rda", ".txt");
+        Files.write(file, i == 7 ? "" : "archivo " + i, false);
+        files.add(file);
+      }
+      
+      Map<File, byte[]> map = Files.readAll(files, 8);
+      check(map.size() == files.size(), "size=" + map.size());
+      Iterator<File> order = map.keySet().iterator();
+      for (int i = 0; i < files.size(); i++) {
+        File file = files.get(i);
+        check(order.next().equals(file), "input order");
+        String expected = i == 7 ? "" : "archivo " + i;
+        check(expected.equals(new String(map.get(file), "UTF-8")), "content " + i);
+      }
+      
+      // Archivos sin tamaño conocido se leen por el flujo.
+      File proc = new File("/proc/self/status");
+      if (proc.exists()) {
+        List<File> special = new ArrayList<File>();
+        special.add(proc);
+        check(Files.readAll(special, 1).get(proc).length > 0, "size 0 file");
+      }
+      
+      // Un archivo que falta detiene la versión con mapa...
+      File missing = new File(files.get(0).getParentFile(), "no-existe-" + System.nanoTime());
+      files.add(150, missing);
+      try {
+        Files.readAll(files, 4);
+        check(false, "missing file accepted");
+      } catch (IOException expected) {
+      }
+      
+      // ...y en la versión con callback sólo falla ese archivo. Las
+      // respuestas llegan en el ejecutor de entrega, no en los de lectura.
+      final Thread[] ui = new Thread[1];
+      ExecutorService delivery = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+          return ui[0] = new Thread(runnable, "ui");
+        }
+      });
+      Dispatcher.get().setExecutorDelivery(delivery);
+      final AtomicInteger ok = new AtomicInteger();
+      final AtomicInteger failed = new AtomicInteger();
+      final AtomicInteger offThread = new AtomicInteger();
+      Files.readAll(files, 4, new Callback<Map.Entry<File, byte[]>>() {
+        @Override public void onResponse(Map.Entry<File, byte[]> result) {
+          if (Thread.currentThread() != ui[0]) offThread.incrementAndGet();
+          ok.incrementAndGet();
+        }
+        @Override public void onFailure(Exception e) {
+          if (Thread.currentThread() != ui[0]) offThread.incrementAndGet();
+          failed.incrementAndGet();
+        }
+      });
+      delivery.shutdown();
+      check(delivery.awaitTermination(10, TimeUnit.SECONDS), "delivery never finished");
+      check(ok.get() == 300 && failed.get() == 1, "ok=" + ok + ", failed=" + failed);
+      check(offThread.get() == 0, "callbacks off the delivery thread: " + offThread);
+      
+      check(Files.readAll(new ArrayList<File>(), 4).isEmpty(), "empty batch");
+      System.out.println("TestReadAll OK");
+    } finally {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+  
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}
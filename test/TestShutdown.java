@@ -0,0 +1,68 @@
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import juno.concurrent.AsyncCall;
+import juno.concurrent.Dispatcher;
+
+/**
+ * Prueba el {@link Dispatcher.ShutdownReport} cuando el usuario cancela una
+ * llamada mientras el despachador se apaga.
+ *
+ * @author jesus
+ */
+public class TestShutdown {
+
+  public static void main(String[] args) throws Exception {
+    final Dispatcher dispatcher = new Dispatcher(Executors.newFixedThreadPool(2));
+    dispatcher.setExecutorDelivery(new Executor() {
+      @Override public void execute(Runnable command) {
+        command.run();
+      }
+    });
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    AsyncCall<Void> blocked = new AsyncCall<Void>(dispatcher) {
+      @Override public Void doInBackground() throws Exception {
+        started.countDown();
+        new CountDownLatch(1).await(); // hasta que se cancele
+        return null;
+      }
+    };
+    AsyncCall<Void> normal = new AsyncCall<Void>(dispatcher) {
+      @Override public Void doInBackground() throws Exception {
+        started.countDown();
+        release.await();
+        return null;
+      }
+    };
+    blocked.execute();
+    normal.execute();
+    check(started.await(5, TimeUnit.SECONDS), "calls never started");
+
+    final AtomicReference<Dispatcher.ShutdownReport> report = new AtomicReference<Dispatcher.ShutdownReport>();
+    Thread shutdown = new Thread() {
+      @Override public void run() {
+        report.set(dispatcher.shutdown(5, TimeUnit.SECONDS));
+      }
+    };
+    shutdown.start();
+    while (!dispatcher.isShutdown()) {
+      Thread.sleep(1);
+    }
+    blocked.cancel(true);
+    release.countDown();
+    shutdown.join();
+
+    Dispatcher.ShutdownReport r = report.get();
+    check(r.completed == 1, "completed=" + r.completed);
+    check(r.cancelled == 0 && r.dropped == 0, "cancelled=" + r.cancelled + ", dropped=" + r.dropped);
+    System.out.println("TestShutdown OK");
+  }
+
+  static void check(boolean condition, String message) {
+    if (!condition) throw new AssertionError(message);
+  }
+}